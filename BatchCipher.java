@@ -0,0 +1,212 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/***********************************************************************
+ * BatchCipher - Enciphers or deciphers many messages, each with its own key.
+ *
+ * SUMMARY:
+ * A batch is a list of BatchJob, each a key, a direction and a text.  The jobs are
+ * shared out to a fixed number of worker threads on a bounded executor.  Each
+ * worker takes the next job from a shared counter, so long and short messages
+ * balance out, and runs it on an ECMEngine taken from a pool kept by this object.
+ * The engine's RotorCage is re-keyed for every job with setRotorOrder() and the
+ * position setters, so no rotors are made per message.
+ *
+ * The results are returned in the order the jobs were given, with the counts and
+ * time of the batch.  The engine only uses the stepping table for long messages,
+ * short ones would spend longer building it than enciphering.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+class BatchCipher {
+    ExecutorService executor;
+    int threads;
+    boolean ownExecutor;
+    ConcurrentLinkedQueue<ECMEngine> engines = new ConcurrentLinkedQueue<ECMEngine>();
+
+
+    BatchCipher(int threads) {
+
+        this.threads = Math.max(1, threads);
+        executor = Executors.newFixedThreadPool(this.threads);
+        ownExecutor = true;
+        return;
+        }
+
+    BatchCipher() {
+
+        this(Runtime.getRuntime().availableProcessors());
+        return;
+        }
+
+    // Runs on a caller's executor, with at most threads jobs at a time.
+    BatchCipher(ExecutorService executor, int threads) {
+
+        this.threads = Math.max(1, threads);
+        this.executor = executor;
+        ownExecutor = false;
+        return;
+        }
+
+/***********************************************************************
+ * run - Runs a batch.
+ *
+ * SUMMARY:
+ * Returns when every job is done.  An exception in one job, for example a badly
+ * formed key, is thrown as an IllegalArgumentException naming the job.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    public BatchResult run(List<BatchJob> jobs) throws InterruptedException {
+        final BatchJob job[] = jobs.toArray(new BatchJob[0]);
+        final String text[] = new String[job.length];
+        final AtomicInteger next = new AtomicInteger();
+        List<Callable<Long>> workers = new ArrayList<Callable<Long>>();
+        long start, letters;
+        int i;
+
+        for (i = 0; i < Math.min(threads, job.length); i++) {
+            workers.add(new Callable<Long>() {
+                public Long call() {
+                    return(work(job, text, next));
+                    }
+                });
+            }
+
+        start = System.nanoTime();
+        letters = 0;
+        for (Future<Long> f : executor.invokeAll(workers)) {
+            try {
+                letters += f.get();
+                }
+            catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                    }
+                throw new IllegalStateException(e.getCause());
+                }
+            }
+        return(new BatchResult(text, letters, System.nanoTime() - start, workers.size()));
+        }
+
+/***********************************************************************
+ * work - One worker, runs jobs until there are none left.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    long work(BatchJob job[], String text[], AtomicInteger next) {
+        ECMEngine engine;
+        char out[];
+        long letters;
+        int i, n;
+
+        engine = engines.poll();
+        if (engine == null) {
+            engine = new ECMEngine(new RotorCage("0N1N2N3N4N", "5N6N7N8N9N", "0N1N2N3N4N"),
+                RotorCage.CSP889);
+            }
+        out = new char[256];
+        letters = 0;
+        try {
+            while ((i = next.getAndIncrement()) < job.length) {
+                if (out.length < job[i].text.length()) {
+                    out = new char[job[i].text.length()];
+                    }
+                try {
+                    job[i].setKey(engine);
+                    if (job[i].direction == RotorCage.ENCRYPT) {
+                        n = engine.encipher(job[i].text, out, 0);
+                        }
+                    else {
+                        n = engine.decipher(job[i].text, out, 0);
+                        }
+                    }
+                catch (RuntimeException e) {
+                    throw new IllegalArgumentException("batch job " + i + ": " + e, e);
+                    }
+                text[i] = new String(out, 0, n);
+                letters += n;
+                }
+            }
+        finally {
+            engines.add(engine);
+            }
+        return(letters);
+        }
+
+    public void shutdown() {
+
+        if (ownExecutor) {
+            executor.shutdown();
+            }
+        return;
+        }
+
+    }   // end of BatchCipher
+
+
+/***********************************************************************
+ * BatchResult - The output texts of a batch, in job order, and its counts.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+class BatchResult {
+    String text[];          // text[i] is the output of job i
+    long letters;           // letters out of the engines
+    long nanos;             // time of the batch
+    int threads;            // workers used
+
+    BatchResult(String text[], long letters, long nanos, int threads) {
+
+        this.text = text;
+        this.letters = letters;
+        this.nanos = nanos;
+        this.threads = threads;
+        return;
+        }
+
+    public double messagesPerSecond() {
+
+        return((nanos > 0) ? text.length * 1e9 / nanos : 0);
+        }
+
+    public double lettersPerSecond() {
+
+        return((nanos > 0) ? letters * 1e9 / nanos : 0);
+        }
+
+    public String toString() {
+
+        return(text.length + " messages, " + letters + " letters in " + (nanos / 1000000)
+            + " ms on " + threads + " threads, " + (long) messagesPerSecond()
+            + " messages/s, " + (long) lettersPerSecond() + " letters/s");
+        }
+
+    }   // end of BatchResult
@@ -0,0 +1,51 @@
+/***********************************************************************
+ * BatchJob - One message of a batch and its key.
+ *
+ * SUMMARY:
+ * The orders are strings such as "0N1N2N3N4N" as for the RotorCage constructor, the
+ * positions as for setCipherBankPos(), setControlBankPos() and setIndexBankPos().
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+class BatchJob {
+    String cipherOrder, controlOrder, indexOrder;
+    String cipherPos, controlPos, indexPos;
+    int machine;            // RotorCage.CSP889 or RotorCage.CSP2900
+    boolean direction;      // RotorCage.ENCRYPT or RotorCage.DECRYPT
+    String text;
+
+    BatchJob(String cipherOrder, String controlOrder, String indexOrder, String cipherPos,
+            String controlPos, String indexPos, int machine, boolean direction, String text) {
+
+        this.cipherOrder = cipherOrder;
+        this.controlOrder = controlOrder;
+        this.indexOrder = indexOrder;
+        this.cipherPos = cipherPos;
+        this.controlPos = controlPos;
+        this.indexPos = indexPos;
+        this.machine = machine;
+        this.direction = direction;
+        this.text = text;
+        return;
+        }
+
+    // Sets up an engine for the start of this message.
+    void setKey(ECMEngine engine) {
+        RotorCage cage = engine.cage;
+
+        cage.setRotorOrder(cipherOrder, controlOrder, indexOrder);
+        cage.setCipherBankPos(cipherPos);
+        cage.setControlBankPos(controlPos);
+        cage.setIndexBankPos(indexPos);
+        cage.cipherCount = 0;
+        engine.machine = machine;
+        engine.mark();
+        return;
+        }
+
+    }   // end of BatchJob
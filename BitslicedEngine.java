@@ -0,0 +1,215 @@
+import java.util.Arrays;
+
+/***********************************************************************
+ * BitslicedEngine - Tests 64 index settings against a crib at once.
+ *
+ * SUMMARY:
+ * The crib test of CribSearch.matches() branches on the key at every cipher rotor
+ * move.  Here bit l of a long is index setting first + l, and every value that
+ * differs between settings is kept as one-hot bit planes: plane p of cipher rotor r
+ * has bit l set if rotor r of setting l is at position p.  A whole step of the
+ * machine is then ANDs and ORs of planes, the same for every setting:
+ *
+ *  the index bank becomes, for each control bank output and cipher rotor, the
+ *      plane of settings in which that output moves that rotor,
+ *  a cipher rotor moves by taking plane p from the next position for the settings
+ *      whose move plane is set,
+ *  the cipher bank path is a one-hot current passed through the 26 x 26 path table
+ *      of each rotor,
+ *  the crib test ANDs the survivors with the plane of the ciphertext letter.
+ *
+ * The control bank is the same for every setting and comes from CribSearch.  The
+ * only tests are on whole planes, to skip empty work and to stop when no setting
+ * survives, never on the key of one setting.
+ * Different control rotor starting positions give different control bank outputs,
+ * so they are swept with one CribSearch each, 64 index settings at a time.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+class BitslicedEngine {
+    CribSearch crib;
+    KeySchedule key;        // cipher rotor paths and moves, the index positions unused
+    RotorCage cage;         // for the index bank table of each setting
+
+    long pos[][] = new long[5][26];     // [rotor][position] settings at the position
+    long moved[] = new long[26];
+    long current[] = new long[26];      // [contact] settings with the current on it
+    long next[] = new long[26];
+    long moveOn[][] = new long[26][5];  // [control output][rotor] settings moving it
+
+
+    BitslicedEngine(CribSearch crib) {
+
+        this.crib = crib;
+        cage = new RotorCage(crib.start);
+        cage.useStepTable(false);
+        key = new KeySchedule(cage, crib.machine);
+        return;
+        }
+
+/***********************************************************************
+ * survivors - Tests settings first to first + n - 1 against the crib.
+ *
+ * SUMMARY:
+ * n is 1 to 64.  Returns the settings that match, bit l for setting first + l.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    public long survivors(int first, int n) {
+        int out[] = crib.controlOut;
+        long all, alive, m;
+        int t, r, j, currents;
+
+        all = (n >= 64) ? -1L : (1L << n) - 1;
+        setIndexBank(first, n);
+        for (r = 0; r < 5; r++) {
+            Arrays.fill(pos[r], 0);
+            pos[r][crib.start.cipherBank[r].pos] = all;
+            }
+
+        currents = crib.currents;
+        alive = all;
+        for (t = 0; t < crib.offset + crib.length; t++) {
+            if (t >= crib.offset) {
+                alive &= encipher(crib.crib[t - crib.offset], crib.cipher[t - crib.offset]);
+                if (alive == 0) {
+                    return(0);
+                    }
+                }
+            for (r = 0; r < 5; r++) {
+                m = 0;
+                for (j = 0; j < currents; j++) {
+                    m |= moveOn[out[t * currents + j]][r];
+                    }
+                rotate(r, m);
+                }
+            }
+        return(alive);
+        }
+
+/***********************************************************************
+ * setIndexBank - Makes the move planes of 64 index settings.
+ *
+ * SUMMARY:
+ * Each control bank output reaches at most one cipher rotor magnet, see
+ * RotorCage.indexMoves(), so each setting adds one bit to one plane per output.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    void setIndexBank(int first, int n) {
+        int table[];
+        int l, i, k, r, setting;
+
+        for (k = 0; k < 26; k++) {
+            Arrays.fill(moveOn[k], 0);
+            }
+        for (l = 0; l < n; l++) {
+            setting = first + l;
+            for (i = 4; i >= 0; i--) {
+                cage.indexBank[i].pos = setting % 10;
+                setting /= 10;
+                }
+            table = cage.indexMoves(crib.machine);
+            for (k = 0; k < 26; k++) {
+                if (table[k] != 0) {
+                    r = Integer.numberOfTrailingZeros(table[k]);
+                    moveOn[k][r] |= 1L << l;
+                    }
+                }
+            }
+        return;
+        }
+
+/***********************************************************************
+ * encipher - The settings in which contact in enciphers to contact target.
+ *
+ * SUMMARY:
+ * The current starts on one contact for every setting, so the first rotor is a
+ * lookup per position.  Rotors 1 to 3 pass the one-hot current through the path
+ * table.  For the last rotor only the target matters, so the decipher path of
+ * each position gives the contact the current must be on.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    long encipher(int in, int target) {
+        int path[];
+        long plane[], t[];
+        long match;
+        int p, i, r;
+
+        Arrays.fill(current, 0);
+        path = key.encPath[0];
+        for (p = 0; p < 26; p++) {
+            current[path[p * 26 + in]] |= pos[0][p];
+            }
+        for (r = 1; r <= 3; r++) {
+            Arrays.fill(next, 0);
+            path = key.encPath[r];
+            plane = pos[r];
+            for (p = 0; p < 26; p++) {
+                if (plane[p] != 0) {            // no setting at p, nothing to pass
+                    for (i = 0; i < 26; i++) {
+                        next[path[p * 26 + i]] |= current[i] & plane[p];
+                        }
+                    }
+                }
+            t = current;
+            current = next;
+            next = t;
+            }
+        match = 0;
+        path = key.decPath[4];
+        for (p = 0; p < 26; p++) {
+            match |= pos[4][p] & current[path[p * 26 + target]];
+            }
+        return(match);
+        }
+
+/***********************************************************************
+ * rotate - Steps cipher rotor r in the settings of plane m.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    void rotate(int r, long m) {
+        int move[] = key.cipherMove[r];
+        long plane[] = pos[r];
+        int p;
+
+        if (m == 0) {
+            return;
+            }
+        for (p = 0; p < 26; p++) {
+            moved[move[p]] = plane[p];
+            }
+        for (p = 0; p < 26; p++) {
+            plane[p] = (plane[p] & ~m) | (moved[p] & m);
+            }
+        return;
+        }
+
+    }   // end of BitslicedEngine
@@ -0,0 +1,81 @@
+/***********************************************************************
+ * CageState - The moving part of a key, for one session.
+ *
+ * SUMMARY:
+ * A copy of the RotorCage of a KeySchedule, of which only the cipher and control
+ * rotor positions and cipherCount change.  A CageState is used by one thread at a
+ * time, see KeySchedule.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        Holds a RotorCage.
+ *
+ ***********************************************************************/
+final class CageState {
+    final RotorCage cage;
+
+
+    CageState(RotorCage cage) {
+
+        this.cage = cage;
+        return;
+        }
+
+    CageState(CageState other) {
+
+        cage = new RotorCage(other.cage);
+        return;
+        }
+
+    public void copy(CageState other) {
+
+        cage.restore(other.cage.snapshot());
+        cage.cipherCount = other.cage.cipherCount;
+        cage.useStepTable(other.cage.stepTableEnabled);
+        return;
+        }
+
+    // The packed state, see RotorCage.snapshot() and restore().
+    public long snapshot() {
+
+        return(cage.snapshot());
+        }
+
+    public void restore(long state) {
+
+        cage.restore(state);
+        return;
+        }
+
+    public void setCipherPos(String posString) {
+
+        cage.setCipherBankPos(posString);
+        return;
+        }
+
+    public void setControlPos(String posString) {
+
+        cage.setControlBankPos(posString);
+        return;
+        }
+
+    public void useStepTable(boolean on) {
+
+        cage.useStepTable(on);
+        return;
+        }
+
+    public String cipherPosToString() {
+
+        return(cage.cipherBankPosToString());
+        }
+
+    public String controlPosToString() {
+
+        return(cage.controlBankPosToString());
+        }
+
+    }   // end of CageState
@@ -0,0 +1,576 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/***********************************************************************
+ * CipherServer - Enciphers and deciphers for local programs over a socket.
+ *
+ * SUMMARY:
+ * One thread runs a Selector over a TCP listener on the loopback address and, if
+ * given a path, a Unix domain socket listener.  Requests are read from any number
+ * of connections, run on a fixed pool of threads with pooled ECMEngines, and the
+ * answers are written back on each connection in the order the requests came.  A
+ * client may send many requests without waiting for the answers.
+ *
+ * Every request and answer is a frame: a 4 byte big endian length and then that
+ * many bytes.  A request is
+ *
+ *  byte    0 encrypt, 1 decrypt
+ *  byte    0 CSP-889, 1 CSP-2900
+ *  30 bytes    cipher, control and index rotor orders, e.g. "0N1N2N3N4N" each
+ *  15 bytes    cipher, control and index positions, e.g. "OOOOO" "OOOOO" "00000"
+ *  the rest    the text, ASCII, under the keyboard rules of ECMEngine
+ *
+ * An answer is a status byte, 0 for done and 1 for a bad request, followed by the
+ * output text or by the reason the request was bad.  The output is as ECMEngine
+ * returns it, without groups.  A frame longer than MAX_FRAME closes the connection.
+ *
+ *  java CipherServer [port [unixSocketPath]]
+ *
+ * unixSocketPath must not name a file or directory; only a socket left by an
+ * earlier server is replaced.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        Only a stale socket is removed.
+ *
+ ***********************************************************************/
+class CipherServer implements Runnable {
+    static final int HEADER = 2 + 30 + 15;      // request bytes before the text
+    static final int MAX_FRAME = 16 << 20;
+    static final int MAX_PENDING = 1024;        // answers waiting per connection
+    static final byte OK = 0, BAD = 1;
+
+    Selector selector;
+    ServerSocketChannel tcp, unix;
+    Path unixPath;
+    boolean boundUnix;              // this server made the socket at unixPath
+    ExecutorService workers;
+    ConcurrentLinkedQueue<ECMEngine> engines = new ConcurrentLinkedQueue<ECMEngine>();
+    ConcurrentLinkedQueue<CipherConnection> ready = new ConcurrentLinkedQueue<CipherConnection>();
+    volatile boolean running = true;
+
+
+/***********************************************************************
+ * CipherServer - Opens the listeners.
+ *
+ * SUMMARY:
+ * port 0 picks a free port, see port().  unixPath may be null for TCP only.  A
+ * socket left at the path by an earlier server is removed, but anything else there
+ * is refused with an IOException, see staleSocket().
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        Only a stale socket is removed.
+ *
+ ***********************************************************************/
+    CipherServer(int port, Path unixPath, int threads) throws IOException {
+
+        selector = Selector.open();
+        tcp = ServerSocketChannel.open();
+        tcp.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        tcp.configureBlocking(false);
+        tcp.register(selector, SelectionKey.OP_ACCEPT);
+        this.unixPath = unixPath;
+        if (unixPath != null) {
+            if (Files.exists(unixPath, LinkOption.NOFOLLOW_LINKS)) {
+                if (!staleSocket(unixPath)) {
+                    tcp.close();
+                    selector.close();
+                    throw new IOException(unixPath + " is not a stale socket, not replacing it");
+                    }
+                Files.delete(unixPath);
+                }
+            unix = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            unix.bind(UnixDomainSocketAddress.of(unixPath));
+            boundUnix = true;
+            unix.configureBlocking(false);
+            unix.register(selector, SelectionKey.OP_ACCEPT);
+            }
+        workers = Executors.newFixedThreadPool(Math.max(1, threads));
+        return;
+        }
+
+    // True if path is a socket that no server is listening on.
+    static boolean staleSocket(Path path) {
+        BasicFileAttributes attributes;
+        SocketChannel probe;
+
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class,
+                LinkOption.NOFOLLOW_LINKS);
+            }
+        catch (IOException e) {
+            return(false);
+            }
+        if (!attributes.isOther()) {        // a file, directory or link
+            return(false);
+            }
+        try {
+            probe = SocketChannel.open(UnixDomainSocketAddress.of(path));
+            probe.close();
+            return(false);                  // a live server
+            }
+        catch (IOException e) {
+            return(true);
+            }
+        }
+
+    public int port() {
+
+        return(tcp.socket().getLocalPort());
+        }
+
+/***********************************************************************
+ * run - The selector loop, until close() is called.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    public void run() {
+        Iterator<SelectionKey> keys;
+        SelectionKey key;
+        CipherConnection c;
+
+        try {
+            while (running) {
+                selector.select();
+                while ((c = ready.poll()) != null) {
+                    c.updateInterest();
+                    }
+                keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                            }
+                        if (key.isAcceptable()) {
+                            accept((ServerSocketChannel) key.channel());
+                            continue;
+                            }
+                        c = (CipherConnection) key.attachment();
+                        if (key.isReadable()) {
+                            c.read();
+                            }
+                        if (key.isValid() && key.isWritable()) {
+                            c.write();
+                            }
+                        }
+                    catch (IOException e) {
+                        closeKey(key);
+                        }
+                    }
+                }
+            }
+        catch (IOException e) {
+            System.err.println("CipherServer: " + e);
+            }
+        finally {
+            shutdown();
+            }
+        return;
+        }
+
+    void accept(ServerSocketChannel server) throws IOException {
+        SocketChannel channel;
+
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            new CipherConnection(this, channel);
+            }
+        return;
+        }
+
+    void closeKey(SelectionKey key) {
+
+        key.cancel();
+        try {
+            key.channel().close();
+            }
+        catch (IOException e) {
+            }
+        return;
+        }
+
+    // Called by a worker when an answer is ready, the selector thread sends it.
+    void answered(CipherConnection c) {
+
+        ready.add(c);
+        selector.wakeup();
+        return;
+        }
+
+    public void close() {
+
+        running = false;
+        selector.wakeup();
+        return;
+        }
+
+    void shutdown() {
+
+        workers.shutdownNow();
+        for (SelectionKey key : selector.keys()) {
+            closeKey(key);
+            }
+        try {
+            selector.close();
+            if (boundUnix) {
+                Files.deleteIfExists(unixPath);
+                }
+            }
+        catch (IOException e) {
+            }
+        return;
+        }
+
+/***********************************************************************
+ * answer - Runs one request and makes its answer frame.
+ *
+ * SUMMARY:
+ * Called on a worker thread.  The key is checked before it reaches the RotorCage,
+ * whose setters trust their input.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    ByteBuffer answer(byte request[]) {
+        BatchJob job;
+        ECMEngine engine;
+        String key, error;
+        byte out[];
+        int n, len;
+
+        if (request.length < HEADER) {
+            return(bad("short request"));
+            }
+        key = new String(request, 2, HEADER - 2, StandardCharsets.US_ASCII);
+        error = checkKey(request[0], request[1], key);
+        if (error != null) {
+            return(bad(error));
+            }
+        job = new BatchJob(key.substring(0, 10), key.substring(10, 20), key.substring(20, 30),
+            key.substring(30, 35), key.substring(35, 40), key.substring(40, 45),
+            (request[1] == 0) ? RotorCage.CSP889 : RotorCage.CSP2900,
+            (request[0] == 0) ? RotorCage.ENCRYPT : RotorCage.DECRYPT, null);
+
+        engine = engines.poll();
+        if (engine == null) {
+            engine = new ECMEngine(new RotorCage("0N1N2N3N4N", "5N6N7N8N9N", "0N1N2N3N4N"),
+                RotorCage.CSP889);
+            }
+        try {
+            job.setKey(engine);
+            len = request.length - HEADER;
+            out = new byte[len];
+            if (job.direction == RotorCage.ENCRYPT) {
+                n = engine.encipher(request, HEADER, len, out, 0);
+                }
+            else {
+                n = engine.decipher(request, HEADER, len, out, 0);
+                }
+            }
+        finally {
+            engines.add(engine);
+            }
+        return(frame(OK, out, n));
+        }
+
+    // Returns why a key is bad, or null.
+    static String checkKey(byte op, byte machine, String key) {
+        int i;
+        char c;
+
+        if ((op != 0) && (op != 1)) {
+            return("bad operation " + op);
+            }
+        if ((machine != 0) && (machine != 1)) {
+            return("bad machine " + machine);
+            }
+        for (i = 0; i < 30; i += 2) {
+            if ((key.charAt(i) < '0') || (key.charAt(i) > ((i < 20) ? '9' : '4'))
+                    || ((key.charAt(i + 1) != 'N') && (key.charAt(i + 1) != 'R'))) {
+                return("bad rotor order " + key.substring(i - i % 10, i - i % 10 + 10));
+                }
+            }
+        for (i = 30; i < 45; i++) {
+            c = key.charAt(i);
+            if ((i < 40) ? ((c < 'A') || (c > 'Z')) : ((c < '0') || (c > '9'))) {
+                return("bad rotor position " + key.substring(i - i % 5, i - i % 5 + 5));
+                }
+            }
+        return(null);
+        }
+
+    static ByteBuffer bad(String reason) {
+        byte body[] = reason.getBytes(StandardCharsets.US_ASCII);
+
+        return(frame(BAD, body, body.length));
+        }
+
+    static ByteBuffer frame(byte status, byte body[], int len) {
+        ByteBuffer b = ByteBuffer.allocate(4 + 1 + len);
+
+        b.putInt(1 + len);
+        b.put(status);
+        b.put(body, 0, len);
+        b.flip();
+        return(b);
+        }
+
+/***********************************************************************
+ * request - Makes a request frame, for clients.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    static ByteBuffer request(boolean direction, int machine, String cipherOrder,
+            String controlOrder, String indexOrder, String cipherPos, String controlPos,
+            String indexPos, String text) {
+        byte key[], body[];
+        ByteBuffer b;
+
+        key = (cipherOrder + controlOrder + indexOrder + cipherPos + controlPos + indexPos)
+            .getBytes(StandardCharsets.US_ASCII);
+        body = text.getBytes(StandardCharsets.US_ASCII);
+        b = ByteBuffer.allocate(4 + 2 + key.length + body.length);
+        b.putInt(2 + key.length + body.length);
+        b.put((byte) ((direction == RotorCage.ENCRYPT) ? 0 : 1));
+        b.put((byte) ((machine == RotorCage.CSP889) ? 0 : 1));
+        b.put(key);
+        b.put(body);
+        b.flip();
+        return(b);
+        }
+
+    public static void main(String args[]) throws IOException {
+        CipherServer server;
+        int port;
+
+        if ((args.length > 1) && Files.exists(Paths.get(args[1]), LinkOption.NOFOLLOW_LINKS)
+                && !staleSocket(Paths.get(args[1]))) {
+            System.err.println("usage: java CipherServer [port [unixSocketPath]]");
+            System.err.println("       unixSocketPath must not be a file, a directory or a live socket");
+            System.exit(2);
+            }
+        port = (args.length > 0) ? Integer.parseInt(args[0]) : 8890;
+        server = new CipherServer(port, (args.length > 1) ? Paths.get(args[1]) : null,
+            Runtime.getRuntime().availableProcessors());
+        System.err.println("CipherServer on 127.0.0.1:" + server.port()
+            + ((args.length > 1) ? " and " + args[1] : ""));
+        server.run();
+        return;
+        }
+
+    }   // end of CipherServer
+
+
+/***********************************************************************
+ * CipherConnection - One client connection of a CipherServer.
+ *
+ * SUMMARY:
+ * Only the selector thread reads and writes the channel.  Each request read gets a
+ * place in pending before it goes to a worker, and answers are written from the
+ * front of pending only when they are done, so they go out in request order.
+ * Reading stops while MAX_PENDING answers are waiting.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+class CipherConnection {
+    static final int IN_SIZE = 4096;    // the read buffer, but while a larger frame comes in
+
+    CipherServer server;
+    SocketChannel channel;
+    SelectionKey key;
+    ByteBuffer in = ByteBuffer.allocate(IN_SIZE);
+    ArrayDeque<CipherAnswer> pending = new ArrayDeque<CipherAnswer>();   // selector thread
+    boolean eof;
+
+
+    CipherConnection(CipherServer server, SocketChannel channel) throws IOException {
+
+        this.server = server;
+        this.channel = channel;
+        key = channel.register(server.selector, SelectionKey.OP_READ, this);
+        return;
+        }
+
+/***********************************************************************
+ * read - Reads what has come in and hands each whole frame to a worker.
+ *
+ * SUMMARY:
+ * The buffer grows to hold a frame larger than IN_SIZE, and goes back to IN_SIZE
+ * once the frame is handed on and what is left fits, so an idle connection does
+ * not keep up to MAX_FRAME bytes.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        Shrinks the buffer after a large frame.
+ *
+ ***********************************************************************/
+    void read() throws IOException {
+        ByteBuffer bigger, smaller;
+        byte request[];
+        int len;
+
+        if (channel.read(in) < 0) {
+            eof = true;
+            }
+        in.flip();
+        while (in.remaining() >= 4) {
+            len = in.getInt(in.position());
+            if ((len < 0) || (len > CipherServer.MAX_FRAME)) {
+                throw new IOException("frame of " + len + " bytes");
+                }
+            if (in.remaining() < 4 + len) {
+                if (in.capacity() < 4 + len) {  // make room for the whole frame
+                    bigger = ByteBuffer.allocate(4 + len);
+                    bigger.put(in);
+                    bigger.flip();
+                    in = bigger;
+                    }
+                break;
+                }
+            in.getInt();
+            request = new byte[len];
+            in.get(request);
+            submit(request);
+            }
+        if ((in.capacity() > IN_SIZE) && (in.remaining() <= IN_SIZE)
+                && ((in.remaining() < 4) || (4 + in.getInt(in.position()) <= IN_SIZE))) {
+            smaller = ByteBuffer.allocate(IN_SIZE);
+            smaller.put(in);            // left ready for the next read, as by compact()
+            in = smaller;
+            }
+        else {
+            in.compact();
+            }
+        updateInterest();
+        return;
+        }
+
+    // Holds a place for the answer and hands the request to a worker.
+    void submit(final byte request[]) {
+        final CipherAnswer answer = new CipherAnswer();
+
+        pending.add(answer);
+        server.workers.execute(new Runnable() {
+            public void run() {
+                ByteBuffer b;
+
+                try {
+                    b = server.answer(request);
+                    }
+                catch (RuntimeException e) {
+                    b = CipherServer.bad(e.toString());
+                    }
+                answer.frame = b;
+                answer.done = true;
+                server.answered(CipherConnection.this);
+                }
+            });
+        return;
+        }
+
+/***********************************************************************
+ * write - Writes the finished answers at the front of pending.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    void write() throws IOException {
+        CipherAnswer head;
+
+        while (((head = pending.peek()) != null) && head.done) {
+            channel.write(head.frame);
+            if (head.frame.hasRemaining()) {
+                break;                          // the socket is full, wait for OP_WRITE
+                }
+            pending.poll();
+            }
+        updateInterest();
+        return;
+        }
+
+    // Reads while there is room for answers, writes while an answer is ready.
+    void updateInterest() {
+        CipherAnswer head;
+        int ops;
+
+        if (!key.isValid()) {
+            return;
+            }
+        head = pending.peek();
+        if (eof && (head == null)) {
+            server.closeKey(key);
+            return;
+            }
+        ops = 0;
+        if (!eof && (pending.size() < CipherServer.MAX_PENDING)) {
+            ops |= SelectionKey.OP_READ;
+            }
+        if ((head != null) && head.done) {
+            ops |= SelectionKey.OP_WRITE;
+            }
+        key.interestOps(ops);
+        return;
+        }
+
+    }   // end of CipherConnection
+
+
+// An answer being made by a worker, see CipherConnection.
+class CipherAnswer {
+    volatile boolean done;
+    ByteBuffer frame;           // written before done is set
+    }
@@ -0,0 +1,303 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/***********************************************************************
+ * CribSearch - Known plaintext search over the index rotor positions.
+ *
+ * SUMMARY:
+ * With the cipher and control rotors and their starting positions known, the only
+ * part of a key left is the 10^5 settings of the index bank, "00000" to "99999".
+ * Given a crib, plaintext known to be at a place in the message, CribSearch tries
+ * every index setting and reports the ones that encipher the crib to the ciphertext.
+ *
+ * The control rotors step the same way whatever the index rotors are, so the
+ * control bank outputs for every character of the crib are found once, in the
+ * constructor.  A candidate then only needs the index bank table of indexMoves(),
+ * the cipher bank path and the cipher rotor moves, and it is dropped at the first
+ * character that does not match.  Most candidates are dropped in one or two.
+ *
+ * The settings are split over a ForkJoinPool with one RotorCage per leaf task.
+ * With useBitslice(true) each leaf tests 64 settings at a time on a BitslicedEngine
+ * instead.  Nothing is left on the pool threads when the search is done.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        Bitsliced search.
+ * 17 Oct 26    1.02        A RotorCage or BitslicedEngine per leaf, not per thread.
+ *
+ ***********************************************************************/
+class CribSearch {
+    static final int SETTINGS = 100000;
+
+    RotorCage start;        // the key without the index positions
+    int machine;            // RotorCage.CSP889 or RotorCage.CSP2900
+    int offset;             // characters of the message before the crib
+    int crib[];             // the crib as contacts, see ECMEngine.encipherContact()
+    int cipher[];           // the ciphertext under the crib
+    int length;             // characters in crib[] and cipher[]
+
+    // The control bank outputs at each character up to the end of the crib, currents
+    // per character at a time.  Only these reach the index bank.
+    int currents;
+    int controlOut[];
+
+    int leafSize = 1024;    // settings tried by one fork join task
+    ForkJoinPool pool = ForkJoinPool.commonPool();
+    boolean bitsliced;      // test settings 64 at a time, see BitslicedEngine
+
+
+/***********************************************************************
+ * CribSearch - Constructor.
+ *
+ * SUMMARY:
+ * start has the rotor orders and the cipher and control positions at the start of
+ * the message.  The crib is read with the encipher keyboard rules and the ciphertext
+ * with the decipher rules, see ECMEngine.  offset is the number of ciphertext
+ * letters before the crib.  A crib that runs past the end of the ciphertext is cut.
+ * Throws IllegalArgumentException if offset is not inside the ciphertext or the
+ * crib has no letters.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        offset and the crib checked.
+ *
+ ***********************************************************************/
+    CribSearch(RotorCage start, int machine, CharSequence cribText, CharSequence ciphertext,
+            int offset) {
+        RotorCage cage;
+        int all[];
+        int i, j, c, n, first;
+
+        this.start = new RotorCage(start);
+        this.machine = machine;
+        this.offset = offset;
+
+        all = new int[ciphertext.length()];
+        n = 0;
+        for (i = 0; i < ciphertext.length(); i++) {
+            c = ECMEngine.decipherContact(ciphertext.charAt(i));
+            if (c >= 0) {
+                all[n++] = c;
+                }
+            }
+        if ((offset < 0) || (offset >= n)) {
+            throw new IllegalArgumentException("crib offset " + offset + " of " + n
+                + " ciphertext letters");
+            }
+        crib = new int[Math.max(0, Math.min(cribText.length(), n - offset))];
+        cipher = new int[crib.length];
+        length = 0;
+        for (i = 0; (i < cribText.length()) && (length < crib.length); i++) {
+            c = ECMEngine.encipherContact(cribText.charAt(i));
+            if (c >= 0) {
+                crib[length] = c;
+                cipher[length] = all[offset + length];
+                length++;
+                }
+            }
+        if (length == 0) {
+            throw new IllegalArgumentException("crib has no letters");
+            }
+
+        // Step a copy of the control bank through the message.
+        first = (machine == RotorCage.CSP889) ? (int) 'F' - 'A' : (int) 'D' - 'A';
+        currents = (int) 'I' - 'A' - first + 1;
+        controlOut = new int[(offset + length) * currents];
+        cage = new RotorCage(start);
+        for (i = 0; i < offset + length; i++) {
+            for (j = 0; j < currents; j++) {
+                controlOut[i * currents + j] = cage.controlBankPath(first + j);
+                }
+            cage.controlBankUpdate();
+            }
+        return;
+        }
+
+    public void setLeafSize(int settings) {
+
+        leafSize = Math.max(1, settings);
+        return;
+        }
+
+    public void setPool(ForkJoinPool pool) {
+
+        this.pool = pool;
+        return;
+        }
+
+    public void useBitslice(boolean on) {
+
+        bitsliced = on;
+        return;
+        }
+
+/***********************************************************************
+ * search - Finds the index settings that match the crib.
+ *
+ * SUMMARY:
+ * Returns the matching settings in increasing order, see indexPos().
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    public int[] search(int from, int to) {
+
+        from = Math.max(0, from);
+        to = Math.min(SETTINGS, to);
+        if (from >= to) {
+            return(new int[0]);
+            }
+        return(pool.invoke(new CribSearchTask(this, from, to)));
+        }
+
+    public int[] search() {
+
+        return(search(0, SETTINGS));
+        }
+
+/***********************************************************************
+ * matches - Tests one index setting against the crib.
+ *
+ * SUMMARY:
+ * The setting is the index positions read as a decimal number, index rotor 0 first.
+ * cage must be a copy of start, its cipher and index positions are changed.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    boolean matches(RotorCage cage, int setting) {
+        int table[];
+        int i, j, t, moves;
+
+        for (i = 4; i >= 0; i--) {
+            cage.indexBank[i].pos = setting % 10;
+            setting /= 10;
+            }
+        for (i = 0; i < 5; i++) {
+            cage.cipherBank[i].pos = start.cipherBank[i].pos;
+            }
+        table = cage.indexMoves(machine);
+
+        for (t = 0; t < offset + length; t++) {
+            if ((t >= offset)
+                    && (cage.cipherBankPath(RotorCage.ENCRYPT, crib[t - offset]) != cipher[t - offset])) {
+                return(false);
+                }
+            moves = 0;
+            for (j = 0; j < currents; j++) {
+                moves |= table[controlOut[t * currents + j]];
+                }
+            cage.cipherBankRotate(moves, machine);
+            }
+        return(true);
+        }
+
+/***********************************************************************
+ * indexPos - The index position string of a setting, for setIndexBankPos().
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    public static String indexPos(int setting) {
+        char pos[] = new char[5];
+        int i;
+
+        for (i = 4; i >= 0; i--) {
+            pos[i] = (char) ('0' + setting % 10);
+            setting /= 10;
+            }
+        return(new String(pos));
+        }
+
+    }   // end of CribSearch
+
+
+/***********************************************************************
+ * CribSearchTask - Fork join task over a range of index settings.
+ *
+ * SUMMARY:
+ * Splits the range in half until it is no more than leafSize and joins the matches
+ * of the halves in order.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+class CribSearchTask extends RecursiveTask<int[]> {
+    private static final long serialVersionUID = 1L;
+    CribSearch search;
+    int from, to;
+
+    CribSearchTask(CribSearch search, int from, int to) {
+
+        this.search = search;
+        this.from = from;
+        this.to = to;
+        return;
+        }
+
+    protected int[] compute() {
+        CribSearchTask left, right;
+        RotorCage cage;
+        BitslicedEngine slice;
+        long alive;
+        int found[], low[], high[];
+        int s, n;
+
+        if (to - from <= search.leafSize) {
+            found = new int[to - from];
+            n = 0;
+            if (search.bitsliced) {
+                slice = new BitslicedEngine(search);
+                for (s = from; s < to; s += 64) {
+                    alive = slice.survivors(s, Math.min(64, to - s));
+                    while (alive != 0) {
+                        found[n++] = s + Long.numberOfTrailingZeros(alive);
+                        alive &= alive - 1;
+                        }
+                    }
+                return(Arrays.copyOf(found, n));
+                }
+            cage = new RotorCage(search.start);
+            cage.useStepTable(false);
+            for (s = from; s < to; s++) {
+                if (search.matches(cage, s)) {
+                    found[n++] = s;
+                    }
+                }
+            return(Arrays.copyOf(found, n));
+            }
+
+        left = new CribSearchTask(search, from, from + (to - from) / 2);
+        right = new CribSearchTask(search, from + (to - from) / 2, to);
+        left.fork();
+        high = right.compute();
+        low = left.join();
+        found = Arrays.copyOf(low, low.length + high.length);
+        System.arraycopy(high, 0, found, low.length, high.length);
+        return(found);
+        }
+
+    }   // end of CribSearchTask
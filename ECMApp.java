@@ -77,11 +77,20 @@
  *                          from right to left during encrypt instead of the correct
  *                          left to right.  Decrypt was backwards as well.
  * 29 Jun 99    1.02    RSP Relinked into a .zip file, but no other change.
+ * 17 Oct 26    1.03        Rotor stepping of ECMcycle moved to RotorCage.cycle() so
+ *                          that ECMEngine can encipher without the applet.
+ * 17 Oct 26    1.04        The paper tape is kept in a PaperTape and the displays are
+ *                          refreshed at most every FRAME_MILLIS, so pasted or typed-ahead
+ *                          text is not slowed by repainting on every key.
+ * 17 Oct 26    1.05        The switches, keyboard, counter and printer moved to
+ *                          ECMMachine so that they can be run without AWT.
  *
  **********************************************************************/
 
 import java.awt.*;
 import java.applet.Applet;
+import java.util.Timer;
+import java.util.TimerTask;
 
 public class ECMApp extends Applet {
     static final boolean DECRYPT = true, ENCRYPT = false;
@@ -97,22 +106,16 @@ public class ECMApp extends Applet {
         };
     
     Choice zeroSwitch;      // zeroize switch
-    String zs;              // position of zeroize switch
-    
     Choice machSwitch;      // type of machine mode switch
-    int machType = CSP889;  // position of machine switch
-    
     Choice masterSwitch;    // master switch
-    String ms;              // position of the master switch
-    String oldms = "O";     // the last position of the master switch.
     
     TextField countDisp;    // counter display
     Button countBut;        // clear the counter button
     
     TextArea paperTape;     // paper tape output
     Button tearTape;        // clear paper tape button
-    int count = 0;          // key counter
-    int encPaperCount = 0;  // encrypt printing counter, used to create 5 character groups
+    PaperTape tape = new PaperTape();   // what is printed, shown in paperTape by refresh()
+    TextField typeAhead;    // text entered here is keyed in at once
     
     TextField cipherDisp;   // display of cipher rotor positions
     TextField controlDisp;  // display of control rotor positions
@@ -122,6 +125,16 @@ public class ECMApp extends Applet {
                             // this program, the wiring between rotors.  On the
                             // real machine the wiring is not in the rotor cage.
                             // This object encapsulates most of the algorithm.
+    ECMMachine machine;     // the switches, keyboard, counter and printer of the
+                            // machine, with the state shown by the displays.
+
+    // The displays are refreshed at most every FRAME_MILLIS.  A refresh asked for sooner
+    // is put off on refreshTimer, and any more keys before it runs are shown with it.
+    static final int FRAME_MILLIS = 40;
+    Timer refreshTimer;
+    boolean refreshPending = false;
+    long lastRefresh = 0;       // System.currentTimeMillis() of the last refresh
+    int shownCount = 0;         // count on the counter display, which starts at "0000"
 
 
 /***********************************************************************
@@ -190,6 +203,10 @@ public class ECMApp extends Applet {
         
         cage.setIndexBankPos("00000");
 
+        // The machine starts off, zeroized and in CSP 889 mode, as the switches show.
+
+        machine = new ECMMachine(cage, tape);
+
         /* The rest of this method just lays out and displays the components i.e. switches in
         * the user interface. */
 
@@ -218,7 +235,6 @@ public class ECMApp extends Applet {
         zeroSwitch.addItem("Zeroize");  // Zeroize
         zeroSwitch.addItem(" ");        // In the middle position do nothing.
         zeroSwitch.addItem("Operate");  // Operate
-        zs = new String("Zeroize");     // Starting position must match the display
 
         machSwitch = new Choice();
         machSwitch.addItem("CSP 889");  // Normal CSP 889 mode of operation.
@@ -272,7 +288,6 @@ public class ECMApp extends Applet {
         masterSwitch.addItem("R");      // Reset
         masterSwitch.addItem("E");      // Encrypt
         masterSwitch.addItem("D");      // Decrypt
-        ms = new String("O");           // Machine starts off.
         
         countDisp = new TextField(4);   // create the counter display
         countDisp.setEditable(false);
@@ -313,6 +328,10 @@ public class ECMApp extends Applet {
         gbc.gridwidth = GridBagConstraints.REMAINDER;
         gblC.setConstraints(paperTape, gbc);
         pC.add(paperTape);                  // Display the Paper Tape
+        typeAhead = new TextField(25);      // create the type-ahead field under the tape
+        gbc.gridwidth = GridBagConstraints.REMAINDER;
+        gblC.setConstraints(typeAhead, gbc);
+        pC.add(typeAhead);                  // Display the type-ahead field
         
         gbc.gridwidth = GridBagConstraints.REMAINDER; // One panel wide in the center
         gblAll.setConstraints(pC, gbc);
@@ -344,9 +363,8 @@ public class ECMApp extends Applet {
         
         // Make sure the rotor position displays are updated after initialization.
         
-        cipherDisp.setText(cage.cipherBankPosToString());   
-        controlDisp.setText(cage.controlBankPosToString());
-        indexDisp.setText(cage.indexBankPosToString());
+        refreshTimer = new Timer(true);
+        refresh();
 
         }   // end of init  
 
@@ -373,56 +391,24 @@ public class ECMApp extends Applet {
  *
  * SUMMARY:
  * action() is called for any component event.  Since all activity of the machine is driven
- * by the switches this method emulates all of the wiring that is not in RotorCage.  Most of
- * the detail here is less interesting than looking at ECMCycle and the RotorCage.
- *
- * The switch action table:
- *
- *          P                       R                       E
- *  Zeroize Blank key only          Blank key only          Blank key only
- *          Counter updates         Counter updates         Counter updates
- *          No Rotor Moves          Zeroize rotors          Zeroize rotors
- *          Prints Blank            No printing             Prints Blanks
- *
- *  Operate All printable keys      1-5 and Blank keys      26 alpha keys
- *          Counter updates         Counter updates         Counter updates
- *          No Rotor Moves          1-5 move cipher&control Control & cipher move
- *          Blank is a space?       Blank moves cipher only X, Z, space & Blank handling
- *          All printable keys      No printing             Printing
- *                                                          
- *  When switching from E to R, or P to R, one to four spaces are output.
- *  Cipher text is printed in 5 character groups separated by spaces.
- *  
- *  Decipher is same as Encipher except Z, X and Space Bar and direction.
- *  During encipher, Z is converted to X, and Space Bar is converted to Z, and
- *          rotors are read from left to right.
- *      During decipher, Z is converted to space, Space Bar is ignored, and
- *          rotors are read from right to left.
- *  During both Decipher and Encipher, Blank moves rotors, prints a space.
- *
- *  If 889/2900 is in the middle, no keys work.
- *  If 889/2900 knob and switch do not match, no keys work
- *  If Zeroize/Operate switch is in the middle, no keys work
- *
- *  cipherCount implements a counter that increments on each encipher or deciphered 
- *      character.  It is cleared whenever the 1st or 5th rotor turns or the master switch
- *      is not E or D.  If it reaches 21, the machine is locked up until the master switch is
- *      rotated out of E. This was added postwar, probably to detect improperly positioned
- *      index rotors.  If the index rotors are not positioned properly there will be no cipher
- *      rotor movement.  In the program this is possible in a practicle sense only if straight
- *      through test control rotors are used.
- *
- *  Also see the curatorial report, SIGKKK and the Army history of converter.
+ * by the switches this method passes each one to the ECMMachine, which emulates all of the
+ * wiring that is not in RotorCage, and then shows the machine.  See ECMMachine.pressKey()
+ * for the switch action table.
  *
  * REVISION HISTORY:
  *
  *   Date   Version By  Purpose of Revision
  * -------- ------- --- --------------------------------------
  * 8 Oct 96     1.00    RSP First release.
+ * 17 Oct 26    1.03        cipherCount is counted by RotorCage.countCharacter().
+ * 17 Oct 26    1.04        Keys moved to pressKey(), displays shown by refresh(),
+ *                          added the type-ahead field.
+ * 17 Oct 26    1.05        The switches and keys are worked by ECMMachine.
  *      
  ***********************************************************************/
     public boolean action(Event e, Object arg) {
-        int i, j;
+        boolean handled;
+        int i;
                 
         // Handle TextFields
         
@@ -452,13 +438,12 @@ public class ECMApp extends Applet {
                         }
                     }
                 if (tf == cipherDisp) {
-                    cage.setCipherBankPos(saNew);   // Update the cipher rotor positions.
-                    cipherDisp.setText(saNew);      // Update the display
+                    machine.setCipherBankPos(saNew);   // Update the cipher rotor positions.
                     }
                 else {  // tf == controlDisp
-                    cage.setControlBankPos(saNew);  // Update the control rotor positions.
-                    controlDisp.setText(saNew);     // Update the display
+                    machine.setControlBankPos(saNew);  // Update the control rotor positions.
                     }
+                refresh();                          // Update the display
                 return true;
                 }   // end of Cipher and Control Display handling
 
@@ -480,75 +465,62 @@ public class ECMApp extends Applet {
                         saNew = saNew.replace(saNew.charAt(i), '0');  
                         }
                     }
-                cage.setIndexBankPos(saNew);    // Update the index rotor positions.
-                indexDisp.setText(saNew);       // Update the display
+                machine.setIndexBankPos(saNew); // Update the index rotor positions.
+                refresh();                      // Update the display
                 return true;
                 }   // end of indexDisp handling
+
+            // Type-ahead, the whole line is keyed in and then shown.
+            if (tf == typeAhead) {
+                typeAhead(saNew);
+                typeAhead.setText("");
+                return true;
+                }
                 
             return false;   // we did not handle this TextField
             }   // End of text field handler
                     
 
+
         // Handle choices, i.e. the switches.
         if (e.target instanceof Choice) {
             Choice ch = (Choice) e.target;
+            String s = ch.getSelectedItem();
             
             // Handle the masterSwitch
             if (ch == masterSwitch) {
-                ms = ch.getSelectedItem();
-                
-                // Clear the cipher movement counter if masterSwitch is not E or D.
-                if ("OPR".indexOf(ms) >= 0) {
-                    cage.cipherCount = 0;   // This is used to detect lack of cipher movement.
-                    }
-
-                if (ms.compareTo("O") == 0) {   // Turn the machine off.                    
-                    oldms = "O";    // oldms is used to detect switch transitions used below
-                    encPaperCount = 0;  // This is used to put cipher text in 5 char groups.
-                    return true;
-                    }
-                    
-                // Zero the encrypt paper count when not in encrypt.
-                // When you change from P to R, or E to R, between 1 and 4 
-                // spaces are output on the real machine while resetting the cam
-                // that spaces 5 character groups during encrypt. To simulate this
-                // behavior this program looks at count, this is not quite the same as
-                // keeping track of the real state of the cam, but close enough. This
-                // spacing is an artifact, not an essential element of the machine.
-                if ( (ms.compareTo("R") == 0) && 
-                    ( (oldms.compareTo("P") == 0) || (oldms.compareTo("E") == 0) ) ) {
-                    encPaperCount = count % 5;
-                    while ((encPaperCount++ % 5) != 0) {
-                        paperTape.appendText(" ");
-                        }
-                    encPaperCount = 0;
-                    oldms = ms;
-                    return true;
-                    }
-                                        
-                oldms = ms; // oldms is used to detect switch transitions above.
+                machine.setMasterSwitch(ECMMachine.MASTER.indexOf(s));
+                refresh();
+                return true;
                 }  // end of masterSwitch
                 
             // Handle Machine Type switch. Some future version of the program
             // might have both the knob and the switch.  When this happens, both
             // knob and switch must agree for anything to happen.
             if (ch == machSwitch) {
-                String s = ch.getSelectedItem();
                 if (s.compareTo("CSP 889") == 0) {
-                    machType = CSP889;
+                    machine.setMachineSwitch(ECMMachine.CSP889);
                     }
                 else if (s.compareTo("CSP 2900") == 0) {
-                    machType = CSP2900;
+                    machine.setMachineSwitch(ECMMachine.CSP2900);
                     }
                 else {
-                    machType = CSPNONE;
+                    machine.setMachineSwitch(ECMMachine.CSPNONE);
                     }
                 return true;
                 }   // end of machSwitch
                 
             // Zeroize switch.  
             if (ch == zeroSwitch) {
-                zs = ch.getSelectedItem();
+                if (s.compareTo("Zeroize") == 0) {
+                    machine.setZeroizeSwitch(ECMMachine.ZEROIZE);
+                    }
+                else if (s.compareTo("Operate") == 0) {
+                    machine.setZeroizeSwitch(ECMMachine.OPERATE);
+                    }
+                else {
+                    machine.setZeroizeSwitch(ECMMachine.MIDDLE);
+                    }
                 return true;
                 }   // end of zeroSwitch
                 
@@ -557,236 +529,30 @@ public class ECMApp extends Applet {
         // Handle buttons
         if (e.target instanceof Button) {
             Button b = (Button) e.target;
-            String bs = b.getLabel();
             
             /* First Handle all the Non-Keyboard Buttons that exist: */
             
             // Clear counter button - this is mechanical and works even if the machine is off.
             if (b == countBut) {
-                count = 0;
-                countDisp.setText(String.valueOf(count));
+                machine.clearCounter();
+                refresh();
                 return true;
                 }
             
             // Clear paper tape button - this does not exist as a button on the machine
             // but is added as a convenience to the computer program's operators.
             if (b == tearTape) {
-                paperTape.setText(" ");
+                machine.tearTape();
+                refresh();
                 return true;
                 }
 
-            // If the unlabeled key on the left is pressed, do nothing.  This key does not
-            // move on the real machine.
-            if (bs.compareTo(" ") == 0) {
-                return true;
-                }
-                
-            // If the master switch is off OR the machine switch is in the middle,
-            // or zeroize switch is in the middle, do nothing by returning.
-            if ((ms.compareTo("O") == 0) || (machType == CSPNONE) || (zs.compareTo(" ") == 0)) {
-                return true;
-                }
-            
-            // Handle the cipherCounter. If the cipher counter is 21, return with no action.
-            if (cage.cipherCount >= 21) {
-                return true;
-                }
-                                        
-            // RPT Button - For now, do nothing if the repeat key. A future feature.
-            if (bs.compareTo("RPT") == 0) {
-                return true;
-                }
-                
-            /* From here down, action should only be a non-repeat keyboard button */
-                        
-            // First handle Zeroize switch in R, P, E and D positions of master switch.
-            if (zs.compareTo("Zeroize") == 0) {     // When Zeroize is selected,
-                if (bs.compareTo("Blank") == 0) {   // only respond to the Blank key and,
-                    // only move the rotors if Reset, Encrypt or Decrypt. Note that you
-                    // should really only use Zeroize with Reset, the rest of this behavior
-                    // is a quirk.
-                    if ("RED".indexOf(ms) >= 0) {
-                    
-                        // The Blank key will advance each of the rotors position until
-                        // they are all on the "O" position.
-                        for (i = 0; i < 5; i++) {   // There are 5 rotors in a bank.
-                            // CSP 889 cipher rotors all move in the normal clockwise rotation
-                            if (machType == CSP889) {   
-                                if (cage.cipherBank[i].pos != (int) 'O' - 'A') {
-                                    cage.cipherBank[i].rotCW();
-                                    // update the cipher bank display.
-                                    cipherDisp.setText(cage.cipherBankPosToString()); 
-                                    // clear the cipher rotor movement counter if the first or
-                                    // last rotor turn.
-                                    if (i == 0 || i == 4) {
-                                        cage.cipherCount = 0;
-                                        }
-                                    }
-                                }
-                            // CSP 2900's 2nd and 4th cipher rotors turn counter clockwise
-                            if (machType == CSP2900) {  
-                                if (cage.cipherBank[i].pos != (int) 'O' - 'A') {
-                                    if ( (i == 0) || (i == 2) || (i ==4) )
-                                        cage.cipherBank[i].rotCW();
-                                    else 
-                                        cage.cipherBank[i].rotCCW();
-                                    // update the cipher bank display.
-                                    cipherDisp.setText(cage.cipherBankPosToString());
-                                    // clear the cipher rotor movement counter if the first or
-                                    // last rotor turn.
-                                    if (i == 0 || i == 4) {
-                                        cage.cipherCount = 0;
-                                        }
-                                    }
-                                }
-                            // Both machines rotate the control bank in the same direction
-                            if (cage.controlBank[i].pos != (int) 'O' - 'A') {
-                                cage.controlBank[i].rotCW();
-                                // update the control bank display.
-                                controlDisp.setText(cage.controlBankPosToString()); 
-                                }
-                            }   // end of the 5 rotor for loop
-                            
-                        // Increment the counter and display it.
-                        countDisp.setText(String.valueOf(++count));
-                        
-                        // Another quirk, not only does Blank work in zeroize in E and D,
-                        // but it also prints a space.                      
-                        if ("ED".indexOf(ms) >= 0){
-                            // Also add a space to the paper tape.
-                            paperTape.appendText(" ");
-                            }
-                        return true;
-                        }   // end of a zeroize with the Blank key in R, E or D
-                        
-                    // The doc indicates that with zeroize and plaintext the machine should 
-                    // do nothing, but on the real machine a Blank key spaces the paper tape
-                    // and updates the counter.
-                    if (ms.compareTo("P") == 0){
-                        // Increment the counter and display it.
-                        countDisp.setText(String.valueOf(++count)); 
-                        paperTape.appendText(" ");      // Add a space to the paper tape.
-                        return true;
-                        }   // end of zeroize and plaintext with Blank key.
-                        
-                    }   // end of Zeroize and Blank key block.
-                    
-                // not a Blank key in zeroize, then do nothing.
-                return true;
-                }   // end of zeroize switch
-            
-            /* From here down we are in Operate (not Zeroize),
-            handle R, P, E and D master switch positions. */
-            
-            // In the Reset position of master switch, pressing number keys 1 through 5
-            // advances the corresponding control and cipher rotors. It is used to set the
-            // rotor position to a key.  Another quirk is that the Blank key moves the cipher
-            // rotors.
-            if (ms.compareTo("R") == 0) {
-                // The 1-5 keys work in R position
-                j = "12345".indexOf(bs);
-                if ( j >= 0) {          // indexOf is positive if bs is found
-                    // Rotate 1 to 4 cipher rotors.  
-                    cage.cipherBankUpdate(machType);
-                    // update the cipher bank display.  
-                    cipherDisp.setText(cage.cipherBankPosToString()); 
-                    // change the position of a control rotor
-                    cage.controlBank[j].rotCW();
-                    // update its display   
-                    controlDisp.setText(cage.controlBankPosToString()); 
-                    // Increment the counter and display it.
-                    countDisp.setText(String.valueOf(++count));
-                    return true;
-                    }
-                    
-                // The doc indicates that nothing should happen here, but Blank moves the
-                // cipher rotors, this is a quirk, not a feature of the real hardware.
-                if (bs.compareTo("Blank") == 0){
-                    // Rotate 1 to 4 cipher rotors. 
-                    cage.cipherBankUpdate(machType);
-                    // update the cipher bank display.              
-                    cipherDisp.setText(cage.cipherBankPosToString()); 
-                    // Increment the counter and display it.
-                    countDisp.setText(String.valueOf(++count));
-                    return true;
-                    }
-                // Keys other than 1-5 and Blank do nothing
-                return true;
-                }
-                                                        
-            // Plaintext switch position
-            if ( ms.compareTo("P") == 0) {
-                // Convert Space Bar to a single space.
-                if ((bs.compareTo("Blank") == 0) || (bs.compareTo("Space Bar") == 0)) {
-                    bs = " ";
-                    }
-                countDisp.setText(String.valueOf(++count)); // Update the counter and display it.
-                paperTape.appendText(bs);                   // Update the paper tape
-                return true;
-                }
-                
-            /* Now encipher or decipher.  Only character keys, number keys, dash,
-            and Blank and Space Bar are left. */
-            
-            // Number keys and the dash key are ignored during encipher or decipher.
-            if ("1234567890-".indexOf(bs) >= 0) {
-                return true;    // ignore the key.
-            }
-                
-            // Blank in E or D has the odd behavior of updating the cipher and control rotor
-            // banks and printing a space.
-            if (bs.compareTo("Blank") == 0) {
-                // ECM cycle will update both cipher and control rotor banks
-                bs = ECMcycle(" ", ENCRYPT, machType); 
-                countDisp.setText(String.valueOf(++count)); // Increment displayed counter
-                paperTape.appendText(" ");                  // Print a space.
-                encPaperCount++;
-                return true;
-                }
-                        
-            // encipher
-            if ( ms.compareTo("E") == 0 ) {
-                // Convert Z to X. There are only 26 cipher text characters.
-                if (bs.compareTo("Z") == 0) {
-                    bs = "X";
-                    }
-                // Convert Space Bar to Z. Spaces are more important than Z. Note that the
-                // deciphered plaintext can never have a Z.
-                if ( bs.compareTo("Space Bar") == 0 ) {
-                    bs = "Z";
-                    }
-                bs = ECMcycle(bs, ENCRYPT, machType);
-                countDisp.setText(String.valueOf(++count)); // Increment displayed counter
-                // Add a space to the paper tape if needed to generate 5 character groups. 
-                // Do not add space the first time through, i.e. encPaperCount = 0.
-                if ((encPaperCount != 0) && ((encPaperCount % 5) == 0)) {   
-                    paperTape.appendText(" "+bs);   // Print the space and ciphertext.
-                    }                       
-                else {
-                    paperTape.appendText(bs);       // Print the cipher text.
-                    }
-                encPaperCount++;
-                cage.cipherCount++;
-                return true;
-                }   // end of encipher
-                
-            // decipher
-            if ( ms.compareTo("D") == 0 ) {
-                if (bs.compareTo("Space Bar") == 0) { // Ignore Space Bar
-                    return true;
-                    }
-                bs = ECMcycle(bs, DECRYPT, machType);
-                // Convert Z to Space.
-                if (bs.compareTo("Z") == 0) {
-                    bs = " ";
-                    }
-                countDisp.setText(String.valueOf(++count)); // Increment display counter.
-                paperTape.appendText(bs);                   // Print the plaintext.
-                cage.cipherCount++;
-                return true;
-                }   // end of decipher
-                                        
-        }   // end of button handling block
+            // Show the key at most every FRAME_MILLIS, keys pressed faster are shown
+            // together.
+            handled = machine.pressKey(b.getLabel());
+            requestRefresh();
+            return handled;
+            }   // end of button handling block
         
     // the action was something we did not handle.
     return false;  
@@ -794,50 +560,134 @@ public class ECMApp extends Applet {
 
 
 /***********************************************************************
- * ECMcycle enciphers or deciphers a single character.
- * Copyright (C) 1996, by Richard Pekelney
- * All Rights Reserved
+ * typeAhead - Keys in a line of text.
  *
  * SUMMARY:
- * Enciphers or deciphers a single character through the RotorCage object.
+ * Each letter, number or dash is pressed as its key and a space as the Space Bar,
+ * anything else is skipped.  The displays are refreshed once at the end.
  *
- * Control and cipher rotor bank contacts are labeled as if a rotor were positioned
- * with letter "A" on top, not reversed, as printed (i.e. increasing clockwise.) 
- * Internally these positions are represented by ints from 0-25. The pos of a rotor 
- * is its displacement from A on top.  For later reference, index rotor contacts are
- * similarly labeled to match an index rotor with zero on top (10,20,30,40,50 on top),
- * not reversed, as printed (i.e. increasing counter clockwise.)
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    public void typeAhead(String text) {
+        char c;
+        int i;
+
+        for (i = 0; i < text.length(); i++) {
+            c = Character.toUpperCase(text.charAt(i));
+            if (c == ' ') {
+                machine.pressKey(ECMMachine.SPACE_BAR);
+                }
+            else {                  // anything not a key is skipped by pressKey()
+                machine.pressKey(ECMMachine.keyCode(String.valueOf(c)));
+                }
+            }
+        refresh();
+        return;
+        }
+
+
+/***********************************************************************
+ * refresh - Brings the displays up to date with the machine.
+ *
+ * SUMMARY:
+ * Only the displays that changed are set, and the paper tape gets only the text
+ * printed since the last refresh.  Runs in the AWT event thread.
  *
  * REVISION HISTORY:
  *
  *   Date   Version By  Purpose of Revision
  * -------- ------- --- --------------------------------------
- * 8 Oct 96     1.00    RSP First release.
- *      
+ * 17 Oct 26    1.00        First release.
+ *
  ***********************************************************************/
-    public String ECMcycle(String s, boolean direction, int machine) {
-        int in, out;
-        String sout;
-                
-        // convert from keyboard string to internal integer representation.
-    in = "ABCDEFGHIJKLMNOPQRSTUVWXYZ".indexOf(s);   // keyboard/printer contact
-        //  01234567890123456789012345              // internal representation result
-    
-    out = cage.cipherBankPath(direction,in);        // encipher or decipher the character
-    
-    // Convert from internal integer representation to string.  This is the inverse of
-    // the lookup done before the encipher or decipher.  Note that substring goes from
-    // the first parameter to the second parameter - 1.
-    sout = "ABCDEFGHIJKLMNOPQRSTUVWXYZ".substring(out, out+1);
-        //      01234567890123456789012345          // internal representation result
+    public void refresh() {
+        String s;
+
+        refreshPending = false;
+        lastRefresh = System.currentTimeMillis();
+        s = cage.cipherBankPosToString();
+        if (!s.equals(cipherDisp.getText())) {
+            cipherDisp.setText(s);
+            }
+        s = cage.controlBankPosToString();
+        if (!s.equals(controlDisp.getText())) {
+            controlDisp.setText(s);
+            }
+        s = cage.indexBankPosToString();
+        if (!s.equals(indexDisp.getText())) {
+            indexDisp.setText(s);
+            }
+        if (machine.count != shownCount) {
+            countDisp.setText(String.valueOf(machine.count));
+            shownCount = machine.count;
+            }
+        tape.show(paperTape);
+        return;
+        }
 
-    cage.cipherBankUpdate(machine);         // Rotate 1 to 4 cipher rotors. 
-        cipherDisp.setText(cage.cipherBankPosToString()); // update the cipher bank display.
-        cage.controlBankUpdate();               // Rotate the control rotors in meter fashion.
-        controlDisp.setText(cage.controlBankPosToString()); // update the control bank display
- 
-        return(sout);
-        }   //end of ECMcycle
+/***********************************************************************
+ * requestRefresh - Refreshes now, or when FRAME_MILLIS have passed.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    void requestRefresh() {
+        long wait;
+
+        if (refreshPending) {
+            return;         // the keys will be shown by the refresh already asked for
+            }
+        wait = lastRefresh + FRAME_MILLIS - System.currentTimeMillis();
+        if (wait <= 0) {
+            refresh();
+            return;
+            }
+        refreshPending = true;
+        refreshTimer.schedule(new TimerTask() {
+            public void run() {
+                EventQueue.invokeLater(new Runnable() {
+                    public void run() {
+                        refresh();
+                        }
+                    });
+                }
+            }, wait);
+        return;
+        }
+
+    // The printed tape, including what has not been shown yet.
+    public String getPaperTape() {
+
+        return(tape.toString());
+        }
+
+
+/***********************************************************************
+ * destroy - Stops the refresh timer when the applet is unloaded.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    public void destroy() {
+
+        if (refreshTimer != null) {
+            refreshTimer.cancel();
+            }
+        return;
+        }
 
 
 /***********************************************************************
@@ -888,6 +738,6 @@ public class ECMApp extends Applet {
             return info;
             }   // end of getParametersInfo
             
-/* There is no need for a start(), stop(), paint(), or destroy() method. */ 
+/* There is no need for a start(), stop(), or paint() method. */ 
 
     }   // end of ECMApp
\ No newline at end of file
@@ -0,0 +1,617 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/***********************************************************************
+ * ECMEngine - Headless bulk encipher and decipher on top of a RotorCage.
+ *
+ * SUMMARY:
+ * ECMMachine, behind ECMApp, enciphers one key at a time and works the counter and
+ * printer for each.  ECMEngine drives the same RotorCage over
+ * whole buffers of text into buffers supplied by the caller.  It has no AWT
+ * dependency and does not create any objects per character.
+ *
+ * The keyboard rules of ECMMachine.pressKey() in the E and D positions are applied:
+ *  During encipher, Z is converted to X, and space is converted to Z.
+ *  During decipher, space is ignored, and Z is converted to a space.
+ *  Any other character that is not a letter is ignored, the way the number and dash
+ *      keys are ignored.  Lower case letters are treated as upper case.
+ *
+ * cipherCount is incremented for each character as in pressKey(), but the lockout
+ * at 21 is left to the caller.  It is a switch interlock on the real machine, not
+ * part of the cipher.
+ *
+ * The engine turns on the RotorCage stepping table for a message of at least
+ * stepTableLength characters, so that the cipher rotor moves are a single table
+ * lookup per character.  Building the table costs about as much as enciphering
+ * RotorCage.STEP_TABLE_SIZE characters, the default length, so shorter messages
+ * leave it off and an engine used for many short messages on different keys never
+ * builds one.
+ *
+ * The parallel methods split a long buffer into chunks of chunkSize characters and
+ * run each chunk on a copy of the RotorCage skipped ahead to the start of the chunk.
+ * The output and the final rotor positions are the same as the serial methods.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        Stepping table only for long messages.
+ *
+ ***********************************************************************/
+class ECMEngine {
+    static final boolean ENCRYPT = RotorCage.ENCRYPT, DECRYPT = RotorCage.DECRYPT;
+
+    RotorCage cage;     // the rotors, positioned by the caller.
+    int machine;        // RotorCage.CSP889 or RotorCage.CSP2900
+
+    // Rotor positions at the start of the message, see mark() and seek().
+    int markCipher[] = new int[5];
+    int markControl[] = new int[5];
+    int markCount;
+
+    int chunkSize = 1 << 16;                    // characters per parallel chunk
+    ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    // Messages of at least this many characters use the stepping table.
+    int stepTableLength = RotorCage.STEP_TABLE_SIZE;
+
+
+    ECMEngine(RotorCage cage, int machine) {
+
+        this.cage = cage;
+        this.machine = machine;
+        mark();
+        return;
+        }
+
+/***********************************************************************
+ * mark - Remembers the rotor positions as the start of a message.
+ *
+ * SUMMARY:
+ * The engine marks the positions of the RotorCage when it is created.  Call mark()
+ * again after the rotors are set for a new message.  The index rotors are not
+ * marked since they do not move.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    public void mark() {
+        int i;
+
+        for (i = 0; i < 5; i++) {
+            markCipher[i] = cage.cipherBank[i].pos;
+            markControl[i] = cage.controlBank[i].pos;
+            }
+        markCount = cage.cipherCount;
+        return;
+        }
+
+/***********************************************************************
+ * seek - Positions the rotors at a character offset in the message.
+ *
+ * SUMMARY:
+ * Puts the rotors where they would be after offset characters had been enciphered
+ * or deciphered from the mark, without enciphering them.  The offset counts
+ * characters that moved the rotors, i.e. not the ignored characters.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    public void seek(long offset) {
+        int i;
+
+        for (i = 0; i < 5; i++) {
+            cage.cipherBank[i].pos = markCipher[i];
+            cage.controlBank[i].pos = markControl[i];
+            }
+        cage.cipherCount = markCount;
+        skip(offset);
+        return;
+        }
+
+/***********************************************************************
+ * skip - Moves the rotors forward over n characters.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    public void skip(long n) {
+        int count;
+        long cycles;
+
+        count = cage.cipherCount;
+        cycles = cage.advance(n, machine);
+        if (cycles < 0) {
+            cycles = count + Math.max(n, 0);
+            }
+        cage.cipherCount = (int) Math.min(cycles, Integer.MAX_VALUE);
+        return;
+        }
+
+/***********************************************************************
+ * cycle - Enciphers or deciphers one contact and counts it.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    int cycle(boolean direction, int in) {
+        int out;
+
+        out = cage.cycle(direction, in, machine);
+        cage.countCharacter();
+        return(out);
+        }
+
+/***********************************************************************
+ * encipher - Enciphers a buffer of plaintext.
+ *
+ * SUMMARY:
+ * Enciphers len characters of in starting at inOff into out starting at outOff.
+ * Returns the number of ciphertext characters written, which is len less any
+ * ignored characters.  The same is true of all the encipher and decipher methods.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        Stepping table by message length.
+ *
+ ***********************************************************************/
+    public int encipher(char in[], int inOff, int len, char out[], int outOff) {
+        int i, c, n;
+
+        stepTableFor(len);
+        n = outOff;
+        for (i = inOff; i < inOff + len; i++) {
+            c = encipherContact(in[i]);
+            if (c >= 0) {
+                out[n++] = (char) (cycle(ENCRYPT, c) + 'A');
+                }
+            }
+        return(n - outOff);
+        }
+
+    public int encipher(byte in[], int inOff, int len, byte out[], int outOff) {
+        int i, c, n;
+
+        stepTableFor(len);
+        n = outOff;
+        for (i = inOff; i < inOff + len; i++) {
+            c = encipherContact(in[i]);
+            if (c >= 0) {
+                out[n++] = (byte) (cycle(ENCRYPT, c) + 'A');
+                }
+            }
+        return(n - outOff);
+        }
+
+    public int encipher(CharSequence in, char out[], int outOff) {
+        int i, c, n;
+
+        stepTableFor(in.length());
+        n = outOff;
+        for (i = 0; i < in.length(); i++) {
+            c = encipherContact(in.charAt(i));
+            if (c >= 0) {
+                out[n++] = (char) (cycle(ENCRYPT, c) + 'A');
+                }
+            }
+        return(n - outOff);
+        }
+
+/***********************************************************************
+ * decipher - Deciphers a buffer of ciphertext.
+ *
+ * SUMMARY:
+ * Deciphers len characters of in starting at inOff into out starting at outOff.
+ * The spaces between 5 character groups are ignored.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        Stepping table by message length.
+ *
+ ***********************************************************************/
+    public int decipher(char in[], int inOff, int len, char out[], int outOff) {
+        int i, c, n;
+
+        stepTableFor(len);
+        n = outOff;
+        for (i = inOff; i < inOff + len; i++) {
+            c = decipherContact(in[i]);
+            if (c >= 0) {
+                out[n++] = plainChar(cycle(DECRYPT, c));
+                }
+            }
+        return(n - outOff);
+        }
+
+    public int decipher(byte in[], int inOff, int len, byte out[], int outOff) {
+        int i, c, n;
+
+        stepTableFor(len);
+        n = outOff;
+        for (i = inOff; i < inOff + len; i++) {
+            c = decipherContact(in[i]);
+            if (c >= 0) {
+                out[n++] = (byte) plainChar(cycle(DECRYPT, c));
+                }
+            }
+        return(n - outOff);
+        }
+
+    public int decipher(CharSequence in, char out[], int outOff) {
+        int i, c, n;
+
+        stepTableFor(in.length());
+        n = outOff;
+        for (i = 0; i < in.length(); i++) {
+            c = decipherContact(in.charAt(i));
+            if (c >= 0) {
+                out[n++] = plainChar(cycle(DECRYPT, c));
+                }
+            }
+        return(n - outOff);
+        }
+
+/***********************************************************************
+ * setChunkSize - Sets the size of the chunks for the parallel methods.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    public void setChunkSize(int size) {
+
+        if (size < 1) {
+            throw new IllegalArgumentException("chunk size " + size);
+            }
+        chunkSize = size;
+        return;
+        }
+
+    public void setPool(ForkJoinPool pool) {
+
+        this.pool = pool;
+        return;
+        }
+
+/***********************************************************************
+ * setStepTableLength - Sets the message length that uses the stepping table.
+ *
+ * SUMMARY:
+ * 0 uses the table for every message, Integer.MAX_VALUE never.  See the class
+ * SUMMARY.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.01        First release.
+ *
+ ***********************************************************************/
+    public void setStepTableLength(int length) {
+
+        stepTableLength = Math.max(0, length);
+        return;
+        }
+
+    // Turns the stepping table on for a message of len characters, or off.
+    void stepTableFor(int len) {
+
+        cage.useStepTable(len >= stepTableLength);
+        return;
+        }
+
+/***********************************************************************
+ * encipherParallel, decipherParallel - Parallel versions of encipher and decipher.
+ *
+ * SUMMARY:
+ * Each chunk is counted first to find how many characters move the rotors before
+ * it, then all the chunks are enciphered at once.  Finally this engine's RotorCage
+ * is skipped ahead over the whole buffer.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    public int encipherParallel(char in[], int inOff, int len, char out[], int outOff) {
+
+        return(runParallel(new ParallelCipher(this, ENCRYPT, in, null, inOff, len, out, null, outOff)));
+        }
+
+    public int encipherParallel(byte in[], int inOff, int len, byte out[], int outOff) {
+
+        return(runParallel(new ParallelCipher(this, ENCRYPT, null, in, inOff, len, null, out, outOff)));
+        }
+
+    public int decipherParallel(char in[], int inOff, int len, char out[], int outOff) {
+
+        return(runParallel(new ParallelCipher(this, DECRYPT, in, null, inOff, len, out, null, outOff)));
+        }
+
+    public int decipherParallel(byte in[], int inOff, int len, byte out[], int outOff) {
+
+        return(runParallel(new ParallelCipher(this, DECRYPT, null, in, inOff, len, null, out, outOff)));
+        }
+
+    int runParallel(ParallelCipher job) {
+        int total;
+
+        // Build the stepping tables once so that the copies share them.
+        cage.prepareStepCycle(machine);
+        total = job.count(pool);
+        pool.invoke(job);
+        skip(total);
+        return(total);
+        }
+
+/***********************************************************************
+ * encipherContact - Converts a plaintext character to a keyboard contact.
+ *
+ * SUMMARY:
+ * Returns the internal 0-25 representation of a plaintext character after the
+ * Z to X and space to Z conversions, or -1 if the character is ignored.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    static int encipherContact(int ch) {
+
+        if ((ch >= 'a') && (ch <= 'z')) {
+            ch = ch - 'a' + 'A';
+            }
+        if (ch == 'Z') {            // There are only 26 cipher text characters.
+            return((int) 'X' - 'A');
+            }
+        if (ch == ' ') {            // Spaces are more important than Z.
+            return((int) 'Z' - 'A');
+            }
+        if ((ch >= 'A') && (ch <= 'Y')) {
+            return(ch - 'A');
+            }
+        return(-1);
+        }
+
+/***********************************************************************
+ * decipherContact - Converts a ciphertext character to a keyboard contact.
+ *
+ * SUMMARY:
+ * Returns the internal 0-25 representation of a ciphertext character, or -1 if
+ * the character is ignored.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    static int decipherContact(int ch) {
+
+        if ((ch >= 'a') && (ch <= 'z')) {
+            return(ch - 'a');
+            }
+        if ((ch >= 'A') && (ch <= 'Z')) {
+            return(ch - 'A');
+            }
+        return(-1);
+        }
+
+/***********************************************************************
+ * plainChar - Converts a deciphered contact to the printed character.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    static char plainChar(int c) {
+
+        if (c == (int) 'Z' - 'A') {     // Z is printed as a space.
+            return(' ');
+            }
+        return((char) (c + 'A'));
+        }
+
+    }   // end of ECMEngine
+
+
+/***********************************************************************
+ * ParallelCipher - Enciphers or deciphers the chunks of a buffer in a ForkJoinPool.
+ *
+ * SUMMARY:
+ * A ParallelCipher covers chunks first to last - 1 and splits in half until it has a
+ * single chunk.  Either the char or the byte buffers are used.  before[] holds the
+ * number of characters that move the rotors before each chunk.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+class ParallelCipher extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    ECMEngine engine;
+    boolean direction;
+    char cin[], cout[];
+    byte bin[], bout[];
+    int inOff, len, outOff;
+    int chunks;
+    int before[];           // shared by all the tasks of one buffer
+    int first, last;
+    boolean counting;
+
+
+    ParallelCipher(ECMEngine engine, boolean direction, char cin[], byte bin[], int inOff,
+            int len, char cout[], byte bout[], int outOff) {
+
+        this.engine = engine;
+        this.direction = direction;
+        this.cin = cin;
+        this.bin = bin;
+        this.inOff = inOff;
+        this.len = len;
+        this.cout = cout;
+        this.bout = bout;
+        this.outOff = outOff;
+        chunks = (len + engine.chunkSize - 1) / engine.chunkSize;
+        before = new int[chunks + 1];
+        first = 0;
+        last = chunks;
+        return;
+        }
+
+    ParallelCipher(ParallelCipher parent, int first, int last) {
+
+        engine = parent.engine;
+        direction = parent.direction;
+        cin = parent.cin;
+        bin = parent.bin;
+        inOff = parent.inOff;
+        len = parent.len;
+        cout = parent.cout;
+        bout = parent.bout;
+        outOff = parent.outOff;
+        chunks = parent.chunks;
+        before = parent.before;
+        counting = parent.counting;
+        this.first = first;
+        this.last = last;
+        return;
+        }
+
+/***********************************************************************
+ * count - Fills before[] and returns the characters that move the rotors.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    int count(ForkJoinPool pool) {
+        int i;
+
+        counting = true;
+        pool.invoke(new ParallelCipher(this, 0, chunks));
+        counting = false;
+
+        // before[] holds the count of each chunk, turn it into a running total.
+        for (i = chunks; i > 0; i--) {
+            before[i] = before[i - 1];
+            }
+        before[0] = 0;
+        for (i = 1; i <= chunks; i++) {
+            before[i] += before[i - 1];
+            }
+        return(before[chunks]);
+        }
+
+    protected void compute() {
+        int middle;
+
+        if (last - first > 1) {
+            middle = (first + last) >>> 1;
+            invokeAll(new ParallelCipher(this, first, middle),
+                new ParallelCipher(this, middle, last));
+            }
+        else if (last - first == 1) {
+            if (counting) {
+                before[first] = countChunk(first);
+                }
+            else {
+                runChunk(first);
+                }
+            }
+        return;
+        }
+
+    int countChunk(int chunk) {
+        int i, start, end, n, c;
+
+        start = inOff + chunk * engine.chunkSize;
+        end = Math.min(start + engine.chunkSize, inOff + len);
+        n = 0;
+        for (i = start; i < end; i++) {
+            c = (cin != null) ? cin[i] : bin[i];
+            if (direction == ECMEngine.ENCRYPT) {
+                c = ECMEngine.encipherContact(c);
+                }
+            else {
+                c = ECMEngine.decipherContact(c);
+                }
+            if (c >= 0) {
+                n++;
+                }
+            }
+        return(n);
+        }
+
+    void runChunk(int chunk) {
+        ECMEngine part;
+        int start, n;
+
+        // A copy of the rotors, positioned at the start of the chunk.  runParallel()
+        // has built the stepping table and the copies share it, so every chunk uses it.
+        part = new ECMEngine(new RotorCage(engine.cage), engine.machine);
+        part.setStepTableLength(0);
+        part.skip(before[chunk]);
+
+        start = inOff + chunk * engine.chunkSize;
+        n = Math.min(engine.chunkSize, inOff + len - start);
+        if (direction == ECMEngine.ENCRYPT) {
+            if (cin != null) {
+                part.encipher(cin, start, n, cout, outOff + before[chunk]);
+                }
+            else {
+                part.encipher(bin, start, n, bout, outOff + before[chunk]);
+                }
+            }
+        else {
+            if (cin != null) {
+                part.decipher(cin, start, n, cout, outOff + before[chunk]);
+                }
+            else {
+                part.decipher(bin, start, n, bout, outOff + before[chunk]);
+                }
+            }
+        return;
+        }
+
+    }   // end of ParallelCipher
@@ -0,0 +1,504 @@
+/***********************************************************************
+ * ECMMachine - The switches, keyboard, counter and printer of the ECM.
+ *
+ * SUMMARY:
+ * This is the machine that ECMApp shows, without AWT.  The switches are set with
+ * setMasterSwitch(), setZeroizeSwitch() and setMachineSwitch(), the keys are pressed
+ * with pressKey(), and what the operator would see is in count, tape and the rotor
+ * positions of cage.  ECMApp turns its events into these calls and shows the result,
+ * ECMReplay runs recorded sessions through them without a display.
+ *
+ * Keys are numbered so that a key press is an int: the letters are their contacts
+ * 0 to 25, the digit keys are DIGIT + 0 to 9 and the other keys have their own
+ * numbers.  keyCode() turns a label of ECMApp.KEYS into its number.
+ *
+ * If log is not null every call is also written to it as a line of an ECMReplay
+ * session, so an operator session can be recorded and played back.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        Split out of ECMApp.action().
+ *
+ ***********************************************************************/
+class ECMMachine {
+    static final boolean DECRYPT = true, ENCRYPT = false;
+    static final int CSP889 = 0, CSP2900 = 1, CSPNONE = 2;
+
+    // Master switch positions, in the order of MASTER.
+    static final String MASTER = "OPRED";
+    static final int OFF = 0, PLAIN = 1, RESET = 2, ENCIPHER = 3, DECIPHER = 4;
+
+    // Zeroize switch positions.
+    static final int ZEROIZE = 0, MIDDLE = 1, OPERATE = 2;
+
+    // Keys other than the letters, which are 0 to 25.
+    static final int SPACE_BAR = 26, BLANK = 27, DASH = 28, RPT = 29, UNLABELED = 30;
+    static final int DIGIT = 31;    // the 0 key, DIGIT + 1 is the 1 key and so on
+    static final int KEYS = DIGIT + 10;
+
+    static final int ZERO = (int) 'O' - 'A';    // zeroized rotor position
+
+    RotorCage cage;
+    int master = OFF;           // position of the master switch
+    int oldMaster = OFF;        // the last position of the master switch
+    int zeroize = ZEROIZE;      // position of the zeroize switch
+    int machine = CSP889;       // position of the machine switch
+    int count = 0;              // key counter
+    int encPaperCount = 0;      // encrypt printing counter, used to create 5 character groups
+    PaperTape tape;             // the printed tape, null to print nothing
+    StringBuilder log;          // the session, see ECMReplay, or null
+
+
+    ECMMachine(RotorCage cage, PaperTape tape) {
+
+        this.cage = cage;
+        this.tape = tape;
+        return;
+        }
+
+    void print(char c) {
+
+        if (tape != null) {
+            tape.print(c);
+            }
+        return;
+        }
+
+    void record(String command, String argument) {
+
+        log.append(command);
+        if (argument != null) {
+            log.append(' ').append(argument);
+            }
+        log.append('\n');
+        return;
+        }
+
+/***********************************************************************
+ * keyCode, keyLabel - Between the labels of ECMApp.KEYS and key numbers.
+ *
+ * SUMMARY:
+ * keyCode() returns -1 for a label that is not a key.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    static int keyCode(String label) {
+        char c;
+
+        if (label.length() == 1) {
+            c = label.charAt(0);
+            if (('A' <= c) && (c <= 'Z')) {
+                return(c - 'A');
+                }
+            if (('0' <= c) && (c <= '9')) {
+                return(DIGIT + c - '0');
+                }
+            if (c == '-') {
+                return(DASH);
+                }
+            if (c == ' ') {
+                return(UNLABELED);
+                }
+            return(-1);
+            }
+        if (label.equals("Space Bar")) {
+            return(SPACE_BAR);
+            }
+        if (label.equals("Blank")) {
+            return(BLANK);
+            }
+        if (label.equals("RPT")) {
+            return(RPT);
+            }
+        return(-1);
+        }
+
+    static String keyLabel(int key) {
+
+        if (key < 26) {
+            return(String.valueOf((char) ('A' + key)));
+            }
+        if (key >= DIGIT) {
+            return(String.valueOf((char) ('0' + key - DIGIT)));
+            }
+        switch (key) {
+            case SPACE_BAR:
+                return("Space Bar");
+            case BLANK:
+                return("Blank");
+            case DASH:
+                return("-");
+            case RPT:
+                return("RPT");
+            default:
+                return(" ");
+            }
+        }
+
+/***********************************************************************
+ * setMasterSwitch - Turns the master switch to one of "OPRED".
+ *
+ * SUMMARY:
+ * The cipher movement counter is cleared out of E and D.  When the switch goes from
+ * P or E to R, one to four spaces are output on the real machine while the cam that
+ * spaces 5 character groups during encrypt is reset.  To simulate this the count is
+ * used, this is not quite the same as keeping track of the real state of the cam,
+ * but close enough.  This spacing is an artifact, not an essential element of the
+ * machine.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 8 Oct 96     1.00    RSP First release, in ECMApp.action().
+ * 17 Oct 26    1.01        Moved from ECMApp.action().
+ *
+ ***********************************************************************/
+    public void setMasterSwitch(int position) {
+
+        if (log != null) {
+            record("master", MASTER.substring(position, position + 1));
+            }
+        master = position;
+
+        // Clear the cipher movement counter if masterSwitch is not E or D.
+        if (master <= RESET) {
+            cage.cipherCount = 0;   // This is used to detect lack of cipher movement.
+            }
+        if (master == OFF) {            // Turn the machine off.
+            encPaperCount = 0;
+            }
+        else if ((master == RESET) && ((oldMaster == PLAIN) || (oldMaster == ENCIPHER))) {
+            encPaperCount = count % 5;
+            while ((encPaperCount++ % 5) != 0) {
+                print(' ');
+                }
+            encPaperCount = 0;
+            }
+        oldMaster = master;
+        return;
+        }
+
+    public void setZeroizeSwitch(int position) {
+
+        if (log != null) {
+            record("zeroize", (position == ZEROIZE) ? "zeroize"
+                : ((position == OPERATE) ? "operate" : "middle"));
+            }
+        zeroize = position;
+        return;
+        }
+
+    public void setMachineSwitch(int position) {
+
+        if (log != null) {
+            record("machine", (position == CSP889) ? "889"
+                : ((position == CSP2900) ? "2900" : "none"));
+            }
+        machine = position;
+        return;
+        }
+
+/***********************************************************************
+ * setRotorOrder, setCipherBankPos, setControlBankPos, setIndexBankPos - Set up the
+ * rotors by hand.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    public void setRotorOrder(String cipherSet, String controlSet, String indexSet) {
+
+        if (log != null) {
+            record("order", cipherSet + " " + controlSet + " " + indexSet);
+            }
+        cage.setRotorOrder(cipherSet, controlSet, indexSet);
+        return;
+        }
+
+    public void setCipherBankPos(String pos) {
+
+        if (log != null) {
+            record("cipher", pos);
+            }
+        cage.setCipherBankPos(pos);
+        return;
+        }
+
+    public void setControlBankPos(String pos) {
+
+        if (log != null) {
+            record("control", pos);
+            }
+        cage.setControlBankPos(pos);
+        return;
+        }
+
+    public void setIndexBankPos(String pos) {
+
+        if (log != null) {
+            record("index", pos);
+            }
+        cage.setIndexBankPos(pos);
+        return;
+        }
+
+    // Clear counter button - this is mechanical and works even if the machine is off.
+    public void clearCounter() {
+
+        if (log != null) {
+            record("clear", null);
+            }
+        count = 0;
+        return;
+        }
+
+    // Clear paper tape button - this does not exist on the machine.
+    public void tearTape() {
+
+        if (log != null) {
+            record("tear", null);
+            }
+        if (tape != null) {
+            tape.tear();
+            tape.print(' ');
+            }
+        return;
+        }
+
+/***********************************************************************
+ * pressKey - Presses a key of the keyboard.
+ * Copyright (C) 1996, by Richard Pekelney
+ * All Rights Reserved
+ *
+ * SUMMARY:
+ * Returns false if key is not a key.  The switch action table:
+ *
+ *          P                       R                       E
+ *  Zeroize Blank key only          Blank key only          Blank key only
+ *          Counter updates         Counter updates         Counter updates
+ *          No Rotor Moves          Zeroize rotors          Zeroize rotors
+ *          Prints Blank            No printing             Prints Blanks
+ *
+ *  Operate All printable keys      1-5 and Blank keys      26 alpha keys
+ *          Counter updates         Counter updates         Counter updates
+ *          No Rotor Moves          1-5 move cipher&control Control & cipher move
+ *          Blank is a space?       Blank moves cipher only X, Z, space & Blank handling
+ *          All printable keys      No printing             Printing
+ *
+ *  Cipher text is printed in 5 character groups separated by spaces.
+ *
+ *  Decipher is same as Encipher except Z, X and Space Bar and direction.
+ *  During encipher, Z is converted to X, and Space Bar is converted to Z, and
+ *          rotors are read from left to right.
+ *      During decipher, Z is converted to space, Space Bar is ignored, and
+ *          rotors are read from right to left.
+ *  During both Decipher and Encipher, Blank moves rotors, prints a space.
+ *
+ *  If 889/2900 is in the middle, no keys work.
+ *  If Zeroize/Operate switch is in the middle, no keys work
+ *
+ *  cipherCount implements a counter that increments on each encipher or deciphered
+ *      character.  It is cleared whenever the 1st or 5th rotor turns or the master switch
+ *      is not E or D.  If it reaches 21, the machine is locked up until the master switch is
+ *      rotated out of E.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 8 Oct 96     1.00    RSP First release, in ECMApp.action().
+ * 17 Oct 26    1.01        Moved from ECMApp.pressKey(), keys are numbers.  Blank in E
+ *                          and D moves the rotors without passing a current.
+ *
+ ***********************************************************************/
+    public boolean pressKey(int key) {
+        int i, j;
+
+        if ((key < 0) || (key >= KEYS)) {
+            return false;
+            }
+        if (log != null) {
+            record("key", keyLabel(key));
+            }
+
+        // If the unlabeled key on the left is pressed, do nothing.  This key does not
+        // move on the real machine.
+        if (key == UNLABELED) {
+            return true;
+            }
+
+        // If the master switch is off OR the machine switch is in the middle,
+        // or zeroize switch is in the middle, do nothing by returning.
+        if ((master == OFF) || (machine == CSPNONE) || (zeroize == MIDDLE)) {
+            return true;
+            }
+
+        // Handle the cipherCounter. If the cipher counter is 21, return with no action.
+        if (cage.cipherCount >= RotorCage.CIPHER_COUNT_LIMIT) {
+            return true;
+            }
+
+        // RPT Button - For now, do nothing if the repeat key. A future feature.
+        if (key == RPT) {
+            return true;
+            }
+
+        // First handle Zeroize switch in R, P, E and D positions of master switch.
+        if (zeroize == ZEROIZE) {           // When Zeroize is selected,
+            if (key == BLANK) {             // only respond to the Blank key and,
+                // only move the rotors if Reset, Encrypt or Decrypt. Note that you
+                // should really only use Zeroize with Reset, the rest of this behavior
+                // is a quirk.
+                if (master >= RESET) {
+
+                    // The Blank key will advance each of the rotors position until
+                    // they are all on the "O" position.
+                    for (i = 0; i < 5; i++) {   // There are 5 rotors in a bank.
+                        if (cage.cipherBank[i].pos != ZERO) {
+                            // CSP 889 cipher rotors all move in the normal clockwise
+                            // rotation, the CSP 2900's 2nd and 4th cipher rotors turn
+                            // counter clockwise.
+                            if ((machine == CSP2900) && ((i == 1) || (i == 3))) {
+                                cage.cipherBank[i].rotCCW();
+                                }
+                            else {
+                                cage.cipherBank[i].rotCW();
+                                }
+                            // clear the cipher rotor movement counter if the first or
+                            // last rotor turn.
+                            if (i == 0 || i == 4) {
+                                cage.cipherCount = 0;
+                                }
+                            }
+                        // Both machines rotate the control bank in the same direction
+                        if (cage.controlBank[i].pos != ZERO) {
+                            cage.controlBank[i].rotCW();
+                            }
+                        }   // end of the 5 rotor for loop
+
+                    count++;
+
+                    // Another quirk, not only does Blank work in zeroize in E and D,
+                    // but it also prints a space.
+                    if (master >= ENCIPHER) {
+                        print(' ');
+                        }
+                    return true;
+                    }   // end of a zeroize with the Blank key in R, E or D
+
+                // The doc indicates that with zeroize and plaintext the machine should
+                // do nothing, but on the real machine a Blank key spaces the paper tape
+                // and updates the counter.
+                count++;
+                print(' ');
+                }   // end of Zeroize and Blank key block.
+
+            // not a Blank key in zeroize, then do nothing.
+            return true;
+            }   // end of zeroize switch
+
+        // In the Reset position of master switch, pressing number keys 1 through 5
+        // advances the corresponding control and cipher rotors. It is used to set the
+        // rotor position to a key.  Another quirk is that the Blank key moves the cipher
+        // rotors.
+        if (master == RESET) {
+            j = key - DIGIT - 1;
+            if ((0 <= j) && (j <= 4)) {
+                cage.cipherBankUpdate(machine);     // Rotate 1 to 4 cipher rotors.
+                cage.controlBank[j].rotCW();        // change the position of a control rotor
+                count++;
+                }
+            else if (key == BLANK) {
+                cage.cipherBankUpdate(machine);     // Rotate 1 to 4 cipher rotors.
+                count++;
+                }
+            // Keys other than 1-5 and Blank do nothing
+            return true;
+            }
+
+        // Plaintext switch position
+        if (master == PLAIN) {
+            count++;
+            if (key < 26) {
+                print((char) ('A' + key));
+                }
+            else if (key >= DIGIT) {
+                print((char) ('0' + key - DIGIT));
+                }
+            else if (key == DASH) {
+                print('-');
+                }
+            else {                                  // Blank and Space Bar print a space
+                print(' ');
+                }
+            return true;
+            }
+
+        // Number keys and the dash key are ignored during encipher or decipher.
+        if ((key >= DIGIT) || (key == DASH)) {
+            return true;
+            }
+
+        // Blank in E or D has the odd behavior of updating the cipher and control rotor
+        // banks and printing a space.
+        if (key == BLANK) {
+            cage.cipherBankUpdate(machine);
+            cage.controlBankUpdate();
+            count++;
+            print(' ');
+            encPaperCount++;
+            return true;
+            }
+
+        // encipher
+        if (master == ENCIPHER) {
+            // Convert Z to X. There are only 26 cipher text characters.
+            if (key == (int) 'Z' - 'A') {
+                key = (int) 'X' - 'A';
+                }
+            // Convert Space Bar to Z. Spaces are more important than Z. Note that the
+            // deciphered plaintext can never have a Z.
+            if (key == SPACE_BAR) {
+                key = (int) 'Z' - 'A';
+                }
+            key = cage.cycle(ENCRYPT, key, machine);
+            count++;
+            // Add a space to the paper tape if needed to generate 5 character groups.
+            // Do not add space the first time through, i.e. encPaperCount = 0.
+            if ((encPaperCount != 0) && ((encPaperCount % 5) == 0)) {
+                print(' ');
+                }
+            print((char) ('A' + key));
+            encPaperCount++;
+            cage.countCharacter();
+            return true;
+            }
+
+        // decipher
+        if (key == SPACE_BAR) {             // Ignore Space Bar
+            return true;
+            }
+        key = cage.cycle(DECRYPT, key, machine);
+        count++;
+        print((key == (int) 'Z' - 'A') ? ' ' : (char) ('A' + key));    // Z prints a space
+        cage.countCharacter();
+        return true;
+        }   // end of pressKey
+
+    public boolean pressKey(String label) {
+
+        return(pressKey(keyCode(label)));
+        }
+
+    }   // end of ECMMachine
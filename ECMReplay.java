@@ -0,0 +1,271 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/***********************************************************************
+ * ECMReplay - Plays a recorded operator session on an ECMMachine.
+ *
+ * SUMMARY:
+ * A session is text, one switch change or key per line, as written to ECMMachine.log:
+ *
+ *  order 0N1N2N3N4N 5N6N7N8N9N 0N1N2N3N4N  rotor orders
+ *  cipher OOOOO            cipher rotor positions, also control and index
+ *  master E                master switch, one of O P R E D
+ *  zeroize operate         zeroize switch, zeroize, middle or operate
+ *  machine 2900            machine switch, 889, 2900 or none
+ *  key Blank               one key by its label in ECMApp.KEYS
+ *  type HELLO WORLD        the keys of a line of text, a space is the Space Bar
+ *  clear                   clear counter button
+ *  tear                    tear off tape button
+ *  # comment
+ *
+ * The session is read once into an int per event, the switch position or key
+ * number in the low bits and the kind of event above TYPE_SHIFT, with the position
+ * strings kept aside.  run() then only switches on the events and calls the
+ * ECMMachine, without making any objects apart from what the tape prints, so long
+ * sessions run at millions of keys a second.
+ *
+ * The machine starts as ECMApp does: the default rotor orders, zeroized, index rotors
+ * at 00000, switches at O, Zeroize and CSP 889.
+ *
+ *  java ECMReplay session.txt [repeat]
+ *
+ * prints the tape, counter and rotor positions at the end, and the rate.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        main refuses a repeat below 1 and closes the session.
+ *
+ ***********************************************************************/
+class ECMReplay {
+    static final int KEY = 0, MASTER = 1, ZEROIZE = 2, MACHINE = 3, ORDER = 4, CIPHER = 5,
+        CONTROL = 6, INDEX = 7, CLEAR = 8, TEAR = 9;
+    static final int TYPE_SHIFT = 24, VALUE_MASK = (1 << TYPE_SHIFT) - 1;
+
+    int events[] = new int[1024];
+    int length = 0;
+    ArrayList<String> args = new ArrayList<String>();   // positions and orders
+
+
+    void add(int type, int value) {
+
+        if (length == events.length) {
+            events = Arrays.copyOf(events, 2 * length);
+            }
+        events[length++] = (type << TYPE_SHIFT) | value;
+        return;
+        }
+
+    void addArg(int type, String arg) {
+
+        add(type, args.size());
+        args.add(arg);
+        return;
+        }
+
+/***********************************************************************
+ * read - Reads a session.
+ *
+ * SUMMARY:
+ * A line that is not understood is an IOException naming the line.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    static ECMReplay read(Reader in) throws IOException {
+        BufferedReader lines = new BufferedReader(in);
+        ECMReplay session = new ECMReplay();
+        String line, command, arg;
+        int n, i, k;
+
+        for (n = 1; (line = lines.readLine()) != null; n++) {
+            if ((line.trim().length() == 0) || line.startsWith("#")) {
+                continue;
+                }
+            i = line.indexOf(' ');
+            command = (i < 0) ? line : line.substring(0, i);
+            arg = (i < 0) ? "" : line.substring(i + 1);
+            k = -1;
+            if (command.equals("key")) {
+                k = ECMMachine.keyCode(arg);
+                session.add(KEY, k);
+                }
+            else if (command.equals("type")) {
+                k = 0;
+                for (i = 0; i < arg.length(); i++) {
+                    k = (arg.charAt(i) == ' ') ? ECMMachine.SPACE_BAR
+                        : ECMMachine.keyCode(arg.substring(i, i + 1).toUpperCase());
+                    if (k < 0) {
+                        break;
+                        }
+                    session.add(KEY, k);
+                    }
+                }
+            else if (command.equals("master")) {
+                k = (arg.length() == 1) ? ECMMachine.MASTER.indexOf(arg.charAt(0)) : -1;
+                session.add(MASTER, k);
+                }
+            else if (command.equals("zeroize")) {
+                k = Arrays.asList("zeroize", "middle", "operate").indexOf(arg);
+                session.add(ZEROIZE, k);
+                }
+            else if (command.equals("machine")) {
+                k = Arrays.asList("889", "2900", "none").indexOf(arg);
+                session.add(MACHINE, k);
+                }
+            else if (command.equals("order") && arg.matches("(\\d[NR]){5}( (\\d[NR]){5}){2}")) {
+                session.addArg(ORDER, arg);
+                k = 0;
+                }
+            else if (command.equals("cipher") && arg.matches("[A-Z]{5}")) {
+                session.addArg(CIPHER, arg);
+                k = 0;
+                }
+            else if (command.equals("control") && arg.matches("[A-Z]{5}")) {
+                session.addArg(CONTROL, arg);
+                k = 0;
+                }
+            else if (command.equals("index") && arg.matches("[0-9]{5}")) {
+                session.addArg(INDEX, arg);
+                k = 0;
+                }
+            else if (command.equals("clear")) {
+                session.add(CLEAR, 0);
+                k = 0;
+                }
+            else if (command.equals("tear")) {
+                session.add(TEAR, 0);
+                k = 0;
+                }
+            if (k < 0) {
+                throw new IOException("session line " + n + ": " + line);
+                }
+            }
+        return(session);
+        }
+
+/***********************************************************************
+ * newMachine - An ECMMachine as ECMApp starts it.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    static ECMMachine newMachine(PaperTape tape) {
+        RotorCage cage;
+
+        cage = new RotorCage("0N1N2N3N4N", "5N6N7N8N9N", "0N1N2N3N4N");
+        cage.zeroize();
+        cage.setIndexBankPos("00000");
+        return(new ECMMachine(cage, tape));
+        }
+
+/***********************************************************************
+ * run - Plays the session on machine.
+ *
+ * SUMMARY:
+ * Returns the number of events played.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    public int run(ECMMachine machine) {
+        String order[];
+        int i, value;
+
+        for (i = 0; i < length; i++) {
+            value = events[i] & VALUE_MASK;
+            switch (events[i] >>> TYPE_SHIFT) {
+                case KEY:
+                    machine.pressKey(value);
+                    break;
+                case MASTER:
+                    machine.setMasterSwitch(value);
+                    break;
+                case ZEROIZE:
+                    machine.setZeroizeSwitch(value);
+                    break;
+                case MACHINE:
+                    machine.setMachineSwitch(value);
+                    break;
+                case ORDER:
+                    order = args.get(value).split(" ");
+                    machine.setRotorOrder(order[0], order[1], order[2]);
+                    break;
+                case CIPHER:
+                    machine.setCipherBankPos(args.get(value));
+                    break;
+                case CONTROL:
+                    machine.setControlBankPos(args.get(value));
+                    break;
+                case INDEX:
+                    machine.setIndexBankPos(args.get(value));
+                    break;
+                case CLEAR:
+                    machine.clearCounter();
+                    break;
+                case TEAR:
+                    machine.tearTape();
+                    break;
+                }
+            }
+        return(length);
+        }
+
+    public static void main(String args[]) throws IOException {
+        ECMReplay session;
+        ECMMachine machine;
+        PaperTape tape;
+        long start, nanos;
+        int repeat, r;
+
+        repeat = 1;
+        if (args.length > 1) {
+            repeat = args[1].matches("[0-9]{1,9}") ? Integer.parseInt(args[1]) : 0;
+            }
+        if ((args.length < 1) || (repeat < 1)) {
+            System.err.println("usage: java ECMReplay session.txt [repeat]");
+            System.err.println("       repeat is a count of at least 1");
+            System.exit(2);
+            }
+        try (FileReader in = new FileReader(args[0])) {
+            session = read(in);
+            }
+        machine = null;
+        tape = null;
+        start = System.nanoTime();
+        for (r = 0; r < repeat; r++) {
+            tape = new PaperTape();
+            machine = newMachine(tape);
+            session.run(machine);
+            }
+        nanos = System.nanoTime() - start;
+
+        System.out.println(tape.toString().trim());
+        System.out.println("count " + machine.count + ", rotors "
+            + machine.cage.cipherBankPosToString() + " "
+            + machine.cage.controlBankPosToString() + " "
+            + machine.cage.indexBankPosToString());
+        System.err.printf("%d events in %.1f ms, %.2fM events/s%n", (long) session.length * repeat,
+            nanos / 1e6, (double) session.length * repeat * 1e3 / nanos);
+        return;
+        }
+
+    }   // end of ECMReplay
@@ -0,0 +1,163 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/***********************************************************************
+ * FileCipher - Enciphers or deciphers a file of any size.
+ *
+ * SUMMARY:
+ * The input file is mapped one window at a time with FileChannel.map() and run
+ * through an ECMEngine into a direct ByteBuffer that is written to the output file.
+ * The buffers are made once, so memory use does not depend on the size of the file.
+ *
+ * Ciphertext is written in 5 letter groups separated by spaces, as ECMApp prints the
+ * paper tape, with a new line instead of a space after every groupsPerLine groups so
+ * that large files can be read.  Deciphered text is written as it comes off the
+ * machine.  The keyboard rules of ECMEngine apply, so the group spaces and line ends
+ * of a ciphertext file are ignored when it is deciphered.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+class FileCipher {
+    static final int WINDOW = 1 << 20;      // bytes mapped at a time
+
+    ECMEngine engine;
+    boolean direction;                      // RotorCage.ENCRYPT or RotorCage.DECRYPT
+    int window;
+    int groupsPerLine = 10;
+
+    byte in[];                              // the mapped window
+    byte text[];                            // the window after the engine
+    ByteBuffer out;                         // formatted text waiting to be written
+    long letters;                           // letters written, for the groups
+
+
+    FileCipher(ECMEngine engine, boolean direction, int window) {
+
+        this.engine = engine;
+        this.direction = direction;
+        this.window = window;
+        in = new byte[window];
+        text = new byte[window];
+        out = ByteBuffer.allocateDirect(window * 2 + 2);
+        return;
+        }
+
+    FileCipher(ECMEngine engine, boolean direction) {
+
+        this(engine, direction, WINDOW);
+        return;
+        }
+
+    public void setGroupsPerLine(int groups) {
+
+        groupsPerLine = Math.max(1, groups);
+        return;
+        }
+
+/***********************************************************************
+ * run - Enciphers or deciphers inPath into outPath.
+ *
+ * SUMMARY:
+ * outPath is created or replaced.  Returns the number of letters written, not
+ * counting the group spaces.  The engine is left where the file ended, so a second
+ * file continues the message.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    public long run(Path inPath, Path outPath) throws IOException {
+        FileChannel inChannel, outChannel;
+        MappedByteBuffer map;
+        long pos, size;
+        int len, n;
+
+        inChannel = FileChannel.open(inPath, StandardOpenOption.READ);
+        try {
+            outChannel = FileChannel.open(outPath, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            try {
+                letters = 0;
+                out.clear();
+                size = inChannel.size();
+                for (pos = 0; pos < size; pos += len) {
+                    len = (int) Math.min(window, size - pos);
+                    map = inChannel.map(FileChannel.MapMode.READ_ONLY, pos, len);
+                    map.get(in, 0, len);
+                    if (direction == RotorCage.ENCRYPT) {
+                        n = engine.encipher(in, 0, len, text, 0);
+                        putGroups(n, outChannel);
+                        }
+                    else {
+                        n = engine.decipher(in, 0, len, text, 0);
+                        out.put(text, 0, n);
+                        letters += n;
+                        flush(outChannel);
+                        }
+                    }
+                if ((direction == RotorCage.ENCRYPT) && (letters > 0)) {
+                    out.put((byte) '\n');
+                    }
+                flush(outChannel);
+                }
+            finally {
+                outChannel.close();
+                }
+            }
+        finally {
+            inChannel.close();
+            }
+        return(letters);
+        }
+
+/***********************************************************************
+ * putGroups - Puts n letters of ciphertext in 5 letter groups.
+ *
+ * SUMMARY:
+ * The count of letters carries over from window to window so that the groups do
+ * not restart at each window.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    void putGroups(int n, FileChannel channel) throws IOException {
+        int i;
+
+        for (i = 0; i < n; i++) {
+            if ((letters != 0) && ((letters % 5) == 0)) {
+                out.put(((letters % (5 * groupsPerLine)) == 0) ? (byte) '\n' : (byte) ' ');
+                }
+            out.put(text[i]);
+            letters++;
+            }
+        flush(channel);
+        return;
+        }
+
+    void flush(FileChannel channel) throws IOException {
+
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+            }
+        out.clear();
+        return;
+        }
+
+    }   // end of FileCipher
@@ -0,0 +1,488 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/***********************************************************************
+ * HillClimb - Stochastic search for the rotor orders and starting positions.
+ *
+ * SUMMARY:
+ * KeySearch tries every order of the large rotors for starting positions that are
+ * known.  HillClimb searches the orders, orientations and the starting positions of
+ * the cipher and control rotors together, for a given index bank.  Each climb starts
+ * from a random key and tries one small change at a time:
+ *
+ *  swap two of the ten large rotors, between or within the banks,
+ *  reverse one rotor, as Rotor.reverse(),
+ *  move one cipher or control rotor to a random starting position,
+ *
+ * keeping the change if the deciphered text scores better.  With a temperature above
+ * zero a worse key is also kept with probability exp(change in score / T), where T
+ * falls to zero over the climb, i.e. simulated annealing.
+ *
+ * One thread per core runs climbs until the restarts or the time are used up.  Each
+ * keeps its best key in arrays, and at the end of a climb offers it to the shared best
+ * result, which is replaced by compareAndSet() only if the new key scores higher.
+ *
+ * Each thread has its own RotorCage, re-wired with setCipherRotor() and
+ * setControlRotor() and deciphering with RotorCage.cycle() into an int[], and a
+ * Scorer reads the int[].  No objects are made per key tried, only for a climb that
+ * beats the shared best.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+class HillClimb {
+    RotorCage start;        // index rotors, the rest of its key is ignored
+    int machine;            // RotorCage.CSP889 or RotorCage.CSP2900
+    Scorer scorer;
+    int cipher[];           // the message as contacts, see ECMEngine.decipherContact()
+    int length;
+
+    int threads = Runtime.getRuntime().availableProcessors();
+    int iterations = 20000;     // changes tried in one climb
+    double temperature = 0;     // starting temperature, 0 to only climb
+    long seed = System.nanoTime();
+
+    AtomicReference<HillClimbResult> best = new AtomicReference<HillClimbResult>();
+    AtomicInteger restartsLeft = new AtomicInteger();
+    LongAdder tried = new LongAdder();      // keys deciphered and scored
+    long deadline;                          // System.nanoTime() to stop by
+    volatile boolean stop;                  // solve() was interrupted
+
+
+/***********************************************************************
+ * HillClimb - Constructor.
+ *
+ * SUMMARY:
+ * The ciphertext is read as in KeySearch, characters that are not letters are
+ * skipped.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    HillClimb(RotorCage start, int machine, CharSequence ciphertext, Scorer scorer) {
+        int i, c;
+
+        this.start = new RotorCage(start);
+        this.machine = machine;
+        this.scorer = scorer;
+        cipher = new int[ciphertext.length()];
+        length = 0;
+        for (i = 0; i < ciphertext.length(); i++) {
+            c = ECMEngine.decipherContact(ciphertext.charAt(i));
+            if (c >= 0) {
+                cipher[length++] = c;
+                }
+            }
+        return;
+        }
+
+    public void setThreads(int threads) {
+
+        this.threads = Math.max(1, threads);
+        return;
+        }
+
+    public void setIterations(int iterations) {
+
+        this.iterations = Math.max(1, iterations);
+        return;
+        }
+
+    public void setTemperature(double temperature) {
+
+        this.temperature = Math.max(0, temperature);
+        return;
+        }
+
+    public void setSeed(long seed) {
+
+        this.seed = seed;
+        return;
+        }
+
+/***********************************************************************
+ * solve - Runs climbs on every thread and returns the best key found.
+ *
+ * SUMMARY:
+ * Stops after restarts climbs in all or when millis have passed, whichever is
+ * first.  A climb running at the time limit stops early and still offers its best.
+ * The best of an earlier call is kept, so solve() may be called again to go on.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    public HillClimbResult solve(int restarts, long millis) throws InterruptedException {
+        Thread workers[] = new Thread[threads];
+        int i;
+
+        restartsLeft.set(restarts);
+        stop = false;
+        deadline = System.nanoTime() + millis * 1000000L;
+        for (i = 0; i < threads; i++) {
+            workers[i] = new Thread(new HillClimbWorker(this, seed + i), "HillClimb-" + i);
+            workers[i].start();
+            }
+        try {
+            for (i = 0; i < threads; i++) {
+                workers[i].join();
+                }
+            }
+        finally {
+            stop = true;            // the workers stop if this thread was interrupted
+            }
+        return(best.get());
+        }
+
+/***********************************************************************
+ * offer - Replaces the shared best with result if result scores higher.
+ *
+ * SUMMARY:
+ * Returns true if result is now the best.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    boolean offer(HillClimbResult result) {
+        HillClimbResult current;
+
+        do {
+            current = best.get();
+            if ((current != null) && (current.score >= result.score)) {
+                return(false);
+                }
+            } while (!best.compareAndSet(current, result));
+        return(true);
+        }
+
+    public double bestScore() {
+        HillClimbResult current = best.get();
+
+        return((current == null) ? Double.NEGATIVE_INFINITY : current.score);
+        }
+
+    public long tried() {
+
+        return(tried.sum());
+        }
+
+    }   // end of HillClimb
+
+
+/***********************************************************************
+ * HillClimbWorker - The climbs of one thread.
+ *
+ * SUMMARY:
+ * The key is rotors[], the rotor number in each place, cipher bank then control
+ * bank, reversed[] for each place, and the starting positions.  A change is kept in
+ * the arrays and undone by the same change, so nothing is copied to try a key.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+class HillClimbWorker implements Runnable {
+    static final int SWAP = 0, REVERSE = 1, CIPHER_POS = 2, CONTROL_POS = 3;
+
+    HillClimb climb;
+    SplittableRandom random;
+    RotorCage cage;
+    int plain[];
+
+    int rotors[] = new int[10];
+    boolean reversed[] = new boolean[10];
+    int pos[] = new int[10];            // cipher bank positions then control bank
+
+    // The best key of this climb.
+    double bestScore;
+    int bestRotors[] = new int[10];
+    boolean bestReversed[] = new boolean[10];
+    int bestPos[] = new int[10];
+
+
+    HillClimbWorker(HillClimb climb, long seed) {
+
+        this.climb = climb;
+        random = new SplittableRandom(seed);
+        cage = new RotorCage(climb.start);
+        cage.useStepTable(false);
+        plain = new int[climb.length];
+        return;
+        }
+
+    public void run() {
+
+        while ((climb.restartsLeft.getAndDecrement() > 0) && !timeUp()) {
+            climbOnce();
+            offerBest();
+            }
+        return;
+        }
+
+    boolean timeUp() {
+
+        return(climb.stop || (System.nanoTime() - climb.deadline >= 0));
+        }
+
+/***********************************************************************
+ * randomKey - A random order, orientation and starting positions.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    void randomKey() {
+        int i, j, t;
+
+        for (i = 0; i < 10; i++) {
+            rotors[i] = i;
+            }
+        for (i = 9; i > 0; i--) {       // Fisher-Yates shuffle
+            j = random.nextInt(i + 1);
+            t = rotors[i];
+            rotors[i] = rotors[j];
+            rotors[j] = t;
+            }
+        for (i = 0; i < 10; i++) {
+            reversed[i] = random.nextBoolean();
+            pos[i] = random.nextInt(26);
+            }
+        return;
+        }
+
+/***********************************************************************
+ * decipher - Deciphers the message with the key in the arrays and scores it.
+ *
+ * SUMMARY:
+ * The scorer may stop once the score is below threshold, see Scorer.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        Early abort threshold.
+ *
+ ***********************************************************************/
+    double decipher(double threshold) {
+        int cipher[] = climb.cipher;
+        int i;
+
+        for (i = 0; i < 5; i++) {
+            cage.setCipherRotor(i, rotors[i], reversed[i]);
+            cage.setControlRotor(i, rotors[i + 5], reversed[i + 5]);
+            cage.cipherBank[i].pos = pos[i];
+            cage.controlBank[i].pos = pos[i + 5];
+            }
+        for (i = 0; i < climb.length; i++) {
+            plain[i] = cage.cycle(RotorCage.DECRYPT, cipher[i], climb.machine);
+            }
+        return(climb.scorer.score(plain, climb.length, threshold));
+        }
+
+/***********************************************************************
+ * change - Makes a change to the key, or undoes it.
+ *
+ * SUMMARY:
+ * For SWAP a and b are places, for REVERSE a is a place, for the positions a is
+ * a rotor of the bank and b the new position.  Returns what undoes the change in b.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    int change(int kind, int a, int b) {
+        int t;
+        boolean r;
+
+        switch (kind) {
+            case SWAP:
+                t = rotors[a];
+                rotors[a] = rotors[b];
+                rotors[b] = t;
+                r = reversed[a];
+                reversed[a] = reversed[b];
+                reversed[b] = r;
+                return(b);
+            case REVERSE:
+                reversed[a] = !reversed[a];
+                return(b);
+            case CIPHER_POS:
+                t = pos[a];
+                pos[a] = b;
+                return(t);
+            default:
+                t = pos[a + 5];
+                pos[a + 5] = b;
+                return(t);
+            }
+        }
+
+/***********************************************************************
+ * climbOnce - One climb from a random key.
+ *
+ * SUMMARY:
+ * Keeping a worse key with probability exp((trial - score) / T) is the same as
+ * keeping any key that scores at least score + T ln(u) for a uniform u, so u is
+ * drawn first and the change is scored against that threshold.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        Scored against the threshold for keeping the change.
+ *
+ ***********************************************************************/
+    void climbOnce() {
+        double score, trial, t, threshold;
+        int k, kind, a, b, undo;
+
+        randomKey();
+        score = decipher(Double.NEGATIVE_INFINITY);
+        bestScore = score;
+        saveBest();
+        for (k = 0; k < climb.iterations; k++) {
+            if (((k & 255) == 0) && timeUp()) {
+                break;
+                }
+            kind = random.nextInt(4);
+            if (kind == SWAP) {
+                a = random.nextInt(10);
+                b = (a + 1 + random.nextInt(9)) % 10;
+                }
+            else if (kind == REVERSE) {
+                a = random.nextInt(10);
+                b = 0;
+                }
+            else {
+                a = random.nextInt(5);
+                b = random.nextInt(26);
+                }
+            t = climb.temperature * (1.0 - (double) k / climb.iterations);
+            threshold = (t > 0) ? score + t * Math.log(random.nextDouble()) : score;
+            undo = change(kind, a, b);
+            trial = decipher(threshold);
+            if (trial >= threshold) {
+                score = trial;
+                if (score > bestScore) {
+                    bestScore = score;
+                    saveBest();
+                    }
+                }
+            else {
+                change(kind, a, undo);
+                }
+            }
+        climb.tried.add(k + 1);
+        return;
+        }
+
+    void saveBest() {
+
+        System.arraycopy(rotors, 0, bestRotors, 0, 10);
+        System.arraycopy(reversed, 0, bestReversed, 0, 10);
+        System.arraycopy(pos, 0, bestPos, 0, 10);
+        return;
+        }
+
+/***********************************************************************
+ * offerBest - Offers the best key of the climb if it beats the shared best.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    void offerBest() {
+        StringBuilder text;
+        String order, position;
+        int i;
+
+        if (bestScore <= climb.bestScore()) {
+            return;
+            }
+        System.arraycopy(bestRotors, 0, rotors, 0, 10);
+        System.arraycopy(bestReversed, 0, reversed, 0, 10);
+        System.arraycopy(bestPos, 0, pos, 0, 10);
+        decipher(Double.NEGATIVE_INFINITY);
+        text = new StringBuilder(climb.length);
+        for (i = 0; i < climb.length; i++) {
+            text.append(ECMEngine.plainChar(plain[i]));
+            }
+        order = "";
+        position = "";
+        for (i = 0; i < 10; i++) {
+            order += (char) ('0' + rotors[i]) + (reversed[i] ? "R" : "N");
+            position += (char) ('A' + pos[i]);
+            }
+        climb.offer(new HillClimbResult(order.substring(0, 10), order.substring(10),
+            position.substring(0, 5), position.substring(5), bestScore, text.toString()));
+        return;
+        }
+
+    }   // end of HillClimbWorker
+
+
+/***********************************************************************
+ * HillClimbResult - A key found by HillClimb, in RotorCage strings.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+class HillClimbResult {
+    final String cipherSet, controlSet;     // as the RotorCage constructor
+    final String cipherPos, controlPos;     // as setCipherBankPos(), setControlBankPos()
+    final double score;
+    final String plaintext;
+
+    HillClimbResult(String cipherSet, String controlSet, String cipherPos, String controlPos,
+            double score, String plaintext) {
+
+        this.cipherSet = cipherSet;
+        this.controlSet = controlSet;
+        this.cipherPos = cipherPos;
+        this.controlPos = controlPos;
+        this.score = score;
+        this.plaintext = plaintext;
+        return;
+        }
+
+    public String toString() {
+
+        return(cipherSet + " " + controlSet + " " + cipherPos + " " + controlPos + " " + score);
+        }
+
+    }   // end of HillClimbResult
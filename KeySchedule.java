@@ -0,0 +1,272 @@
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/***********************************************************************
+ * KeySchedule - The fixed part of a key, shared by any number of threads.
+ *
+ * SUMMARY:
+ * A RotorCage keeps the rotor wiring and the rotor positions together in public
+ * arrays that ECMApp and the engines change as they go, so one RotorCage can only be
+ * used by one thread.  A KeySchedule holds only what does not change while a
+ * message is enciphered: the order and orientation of all the rotors, the index
+ * rotor positions and the machine type.  The moving parts are in a CageState, one
+ * per session.  One schedule can drive many sessions on many threads at once.
+ *
+ * The schedule keeps a RotorCage set to the key that is never moved, and each
+ * CageState is a copy of it, so a session is stepped by the RotorCage code itself
+ * and there is only one implementation of the machine.  The path and rotation
+ * tables below are the shared tables of the rotor classes, for the engines that
+ * work on flat tables, MultiKeyEngine and BitslicedEngine.
+ *
+ * Control rotors 1 and 5 do not move, so each pair of their positions has its own
+ * stepping table, see RotorCage.useStepTable().  These are made the first time a
+ * session asks for them and are kept in an AtomicReferenceArray so that sessions on
+ * other threads find them.  Two threads may build the same table at the same time,
+ * both tables are the same and only one is kept.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        Sessions are stepped by RotorCage.
+ * 17 Oct 26    1.02        Checked key, see name().
+ *
+ ***********************************************************************/
+final class KeySchedule {
+    static final boolean ENCRYPT = RotorCage.ENCRYPT, DECRYPT = RotorCage.DECRYPT;
+
+    final String cipherOrder, controlOrder, indexOrder, indexPos;
+    final int machine;
+    final String name;                          // see name()
+    final RotorCage cage;                       // the key, copied by newState()
+
+    // [rotor] the shared tables of each rotor, see CipherRotor and ControlRotor.
+    final int encPath[][] = new int[5][];
+    final int decPath[][] = new int[5][];
+    final int controlPath[][] = new int[5][];
+    final int cipherMove[][] = new int[5][];    // next position when a cipher rotor moves
+    final int controlMove[][] = new int[5][];   // next position when a control rotor moves
+
+    final int indexMoves[];                     // see RotorCage.indexMoves()
+    final int firstCurrent, lastCurrent;        // control bank inputs that are on
+
+    // [control rotor 1 * 26 + control rotor 5] stepping tables, made when needed.
+    final AtomicReferenceArray<byte[]> stepTables = new AtomicReferenceArray<byte[]>(26 * 26);
+
+
+/***********************************************************************
+ * KeySchedule - Constructor.
+ *
+ * SUMMARY:
+ * The orders are as for the RotorCage constructor, indexPos as for
+ * setIndexBankPos() and machine is RotorCage.CSP889 or RotorCage.CSP2900.  The
+ * orders may be in lower case.  Throws IllegalArgumentException if the key is not
+ * one of these, see name().
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        The RotorCage is kept.
+ * 17 Oct 26    1.02        The key is checked.
+ *
+ ***********************************************************************/
+    KeySchedule(String cipherOrder, String controlOrder, String indexOrder, String indexPos,
+            int machine) {
+        int i;
+
+        name = name(cipherOrder, controlOrder, indexOrder, indexPos, machine);
+        this.cipherOrder = cipherOrder.toUpperCase();
+        this.controlOrder = controlOrder.toUpperCase();
+        this.indexOrder = indexOrder.toUpperCase();
+        this.indexPos = indexPos;
+        this.machine = machine;
+
+        cage = new RotorCage(this.cipherOrder, this.controlOrder, this.indexOrder);
+        cage.setIndexBankPos(indexPos);
+        for (i = 0; i < 5; i++) {
+            encPath[i] = cage.cipherBank[i].encPath;
+            decPath[i] = cage.cipherBank[i].decPath;
+            controlPath[i] = cage.controlBank[i].path;
+            controlMove[i] = cage.controlBank[i].cw;
+            // In a CSP-2900 cipher rotors 2 and 4 (array index 1 and 3) rotate backwards.
+            cipherMove[i] = ((machine != RotorCage.CSP889) && ((i == 1) || (i == 3)))
+                ? cage.cipherBank[i].ccw : cage.cipherBank[i].cw;
+            }
+        indexMoves = cage.indexMoves(machine).clone();
+        firstCurrent = (machine == RotorCage.CSP889) ? (int) 'F' - 'A' : (int) 'D' - 'A';
+        lastCurrent = (int) 'I' - 'A';
+        return;
+        }
+
+    // The schedule of the key a RotorCage is set to.
+    KeySchedule(RotorCage cage, int machine) {
+
+        this(cage.cipherOrderString(), cage.controlOrderString(), cage.indexOrderString(),
+            cage.indexBankPosToString(), machine);
+        return;
+        }
+
+/***********************************************************************
+ * newState - A session at the given cipher and control rotor positions.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        A copy of the schedule's RotorCage.
+ *
+ ***********************************************************************/
+    public CageState newState(String cipherPos, String controlPos) {
+        CageState state = new CageState(new RotorCage(cage));
+
+        state.setCipherPos(cipherPos);
+        state.setControlPos(controlPos);
+        return(state);
+        }
+
+/***********************************************************************
+ * cycle - Enciphers or deciphers one contact and moves the rotors of a session.
+ *
+ * SUMMARY:
+ * RotorCage.cycle() on the session's cage.  Uses the stepping table if the session
+ * has useStepTable set.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        RotorCage.cycle().
+ *
+ ***********************************************************************/
+    public int cycle(CageState s, boolean direction, int in) {
+
+        shareStepTable(s);
+        return(s.cage.cycle(direction, in, machine));
+        }
+
+    public int cipherBankPath(CageState s, boolean direction, int in) {
+
+        return(s.cage.cipherBankPath(direction, in));
+        }
+
+/***********************************************************************
+ * moves - The cipher rotors that move at the session's control positions.
+ *
+ * SUMMARY:
+ * Bit i is set if cipher rotor i moves, as RotorCage.cipherBankMoves().
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        RotorCage.cipherBankMoves() and stepTableMoves().
+ *
+ ***********************************************************************/
+    public int moves(CageState s) {
+
+        if (s.cage.stepTableEnabled) {
+            shareStepTable(s);
+            return(s.cage.stepTableMoves(machine));
+            }
+        return(s.cage.cipherBankMoves(machine));
+        }
+
+    void cipherBankRotate(CageState s, int moves) {
+
+        s.cage.cipherBankRotate(moves, machine);
+        return;
+        }
+
+    void controlBankUpdate(CageState s) {
+
+        s.cage.controlBankUpdate();
+        return;
+        }
+
+    // Gives the session the shared stepping table for its control rotors 1 and 5, so
+    // that its RotorCage does not build its own.
+    void shareStepTable(CageState s) {
+        RotorCage c = s.cage;
+        int key;
+
+        if (c.stepTableEnabled) {
+            key = c.stepTableKey(machine);
+            if (key != c.stepKey) {
+                c.stepTable = stepTable(c.controlBank[0].pos, c.controlBank[4].pos);
+                c.stepKey = key;
+                }
+            }
+        return;
+        }
+
+/***********************************************************************
+ * stepTable - The stepping table for control rotors 1 and 5 at c0 and c4.
+ *
+ * SUMMARY:
+ * Built by RotorCage.buildStepTable() on a copy of the schedule's cage.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        RotorCage.buildStepTable().
+ *
+ ***********************************************************************/
+    public byte[] stepTable(int c0, int c4) {
+        RotorCage c;
+
+        if (stepTables.get(c0 * 26 + c4) == null) {
+            c = new RotorCage(cage);
+            c.controlBank[0].pos = c0;
+            c.controlBank[4].pos = c4;
+            c.buildStepTable(machine);
+            stepTables.compareAndSet(c0 * 26 + c4, null, c.stepTable);
+            }
+        return(stepTables.get(c0 * 26 + c4));
+        }
+
+/***********************************************************************
+ * name - The canonical name of a key, as toString() of its schedule.
+ *
+ * SUMMARY:
+ * The orders in upper case, the index positions and the machine, for example
+ * "0N1N2N3N4N 5N6N7N8N9N 0N1N2N3N4N 00000 CSP-889".  Two keys have the same name
+ * only if they are the same key.  Throws IllegalArgumentException unless each order
+ * is five rotor numbers each with N or R, the index rotors 0 to 4 and the others 0
+ * to 9, indexPos is five digits and machine is CSP889 or CSP2900.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.02        First release.
+ *
+ ***********************************************************************/
+    static String name(String cipherOrder, String controlOrder, String indexOrder,
+            String indexPos, int machine) {
+
+        cipherOrder = cipherOrder.toUpperCase();
+        controlOrder = controlOrder.toUpperCase();
+        indexOrder = indexOrder.toUpperCase();
+        if (!cipherOrder.matches("([0-9][NR]){5}") || !controlOrder.matches("([0-9][NR]){5}")
+                || !indexOrder.matches("([0-4][NR]){5}") || !indexPos.matches("[0-9]{5}")
+                || ((machine != RotorCage.CSP889) && (machine != RotorCage.CSP2900))) {
+            throw new IllegalArgumentException("key " + cipherOrder + " " + controlOrder + " "
+                + indexOrder + " " + indexPos + " " + machine);
+            }
+        return(cipherOrder + " " + controlOrder + " " + indexOrder + " " + indexPos + " "
+            + ((machine == RotorCage.CSP889) ? "CSP-889" : "CSP-2900"));
+        }
+
+    public String toString() {
+
+        return(name);
+        }
+
+    }   // end of KeySchedule
@@ -0,0 +1,176 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/***********************************************************************
+ * KeyScheduleCache - Keeps the most recently used KeySchedules.
+ *
+ * SUMMARY:
+ * Traffic on the same daily key comes in all day, and a KeySchedule with its
+ * stepping tables costs far more to make than a message costs to encipher.  The
+ * cache returns the schedule for a key if it has one, otherwise it makes one and
+ * keeps it, dropping the least recently used schedule when there are more than
+ * capacity.  The stepping tables a schedule builds stay with it, so later messages
+ * on the key find them ready.
+ *
+ * The schedules are kept by KeySchedule.name(), so a key written in lower case
+ * finds the same schedule, and a key that is not one is refused before anything is
+ * made.
+ *
+ * The map is a ConcurrentHashMap, so a hit takes no lock: it only stamps the entry
+ * with the time of use from a shared counter.  A missing schedule is made outside
+ * any lock; if two threads make the same one at the same time the first one stored
+ * is returned to both.  When the map is over capacity the entry with the oldest
+ * stamp is dropped, which takes a pass over the map under a lock of its own, paid
+ * only on a miss, next to the cost of making a schedule.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        Canonical keys, ConcurrentHashMap.
+ *
+ ***********************************************************************/
+class KeyScheduleCache {
+    int capacity;
+    ConcurrentHashMap<String, CachedSchedule> map = new ConcurrentHashMap<String, CachedSchedule>();
+    AtomicLong clock = new AtomicLong();     // stamps the entries as they are used
+    Object evicting = new Object();         // held while the oldest entry is found
+    LongAdder hits = new LongAdder();
+    LongAdder misses = new LongAdder();
+    LongAdder evictions = new LongAdder();
+
+
+    KeyScheduleCache(int capacity) {
+
+        this.capacity = Math.max(1, capacity);
+        return;
+        }
+
+/***********************************************************************
+ * get - Returns the schedule of a key, making it if it is not in the cache.
+ *
+ * SUMMARY:
+ * The arguments are as for the KeySchedule constructor.  Throws
+ * IllegalArgumentException if they are not a key, see KeySchedule.name().
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        Canonical keys, no global lock.
+ *
+ ***********************************************************************/
+    public KeySchedule get(String cipherOrder, String controlOrder, String indexOrder,
+            String indexPos, int machine) {
+        String name;
+        CachedSchedule entry, other;
+
+        name = KeySchedule.name(cipherOrder, controlOrder, indexOrder, indexPos, machine);
+        entry = map.get(name);
+        if (entry != null) {
+            hits.increment();
+            entry.used = clock.incrementAndGet();
+            return(entry.schedule);
+            }
+        misses.increment();
+
+        entry = new CachedSchedule(new KeySchedule(cipherOrder, controlOrder, indexOrder,
+            indexPos, machine), clock.incrementAndGet());
+        other = map.putIfAbsent(name, entry);
+        if (other != null) {
+            return(other.schedule);
+            }
+        trim();
+        return(entry.schedule);
+        }
+
+    // Drops the least recently used entries down to capacity.
+    void trim() {
+        Map.Entry<String, CachedSchedule> oldest;
+
+        synchronized (evicting) {
+            while (map.size() > capacity) {
+                oldest = null;
+                for (Map.Entry<String, CachedSchedule> e : map.entrySet()) {
+                    if ((oldest == null) || (e.getValue().used < oldest.getValue().used)) {
+                        oldest = e;
+                        }
+                    }
+                if ((oldest != null) && map.remove(oldest.getKey(), oldest.getValue())) {
+                    evictions.increment();
+                    }
+                }
+            }
+        return;
+        }
+
+    public int size() {
+
+        return(map.size());
+        }
+
+    public long hits() {
+
+        return(hits.sum());
+        }
+
+    public long misses() {
+
+        return(misses.sum());
+        }
+
+    public long evictions() {
+
+        return(evictions.sum());
+        }
+
+    public double hitRate() {
+        long h, m;
+
+        h = hits.sum();
+        m = misses.sum();
+        return(((h + m) > 0) ? (double) h / (h + m) : 0);
+        }
+
+    public void clear() {
+
+        map.clear();
+        return;
+        }
+
+    public String toString() {
+
+        return(map.size() + "/" + capacity + " schedules, " + hits.sum() + " hits, "
+            + misses.sum() + " misses, " + evictions.sum() + " evictions");
+        }
+
+    }   // end of KeyScheduleCache
+
+
+/***********************************************************************
+ * CachedSchedule - A KeySchedule in a KeyScheduleCache and when it was last used.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.01        First release.
+ *
+ ***********************************************************************/
+class CachedSchedule {
+    final KeySchedule schedule;
+    volatile long used;         // KeyScheduleCache.clock when last returned
+
+
+    CachedSchedule(KeySchedule schedule, long used) {
+
+        this.schedule = schedule;
+        this.used = used;
+        return;
+        }
+
+    }   // end of CachedSchedule
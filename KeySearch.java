@@ -0,0 +1,543 @@
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/***********************************************************************
+ * KeySearch - Ciphertext only search over the cipher and control rotor orders.
+ *
+ * SUMMARY:
+ * A key is the order and orientation of the ten large rotors, i.e. the cipherSet and
+ * controlSet strings of the RotorCage constructor, plus the index rotors and the
+ * starting positions.  KeySearch tries every order and orientation of the large
+ * rotors for a given index bank and starting positions, deciphers the message with
+ * each and keeps the best scoring keys.
+ *
+ * Each candidate is a number from 0 to CANDIDATES - 1.  candidate / 1024 is the
+ * permutation of rotors 0 to 9 into the ten places, cipher rotors 0 to 4 and then
+ * control rotors 0 to 4, numbered in lexical order.  Bit i of candidate % 1024 is
+ * set if the rotor in place i is reversed.  This covers 10! * 2^10 keys, so a call
+ * of search() is normally given a range.
+ *
+ * The range is split over a ForkJoinPool.  Each leaf task makes a KeySearchWorker
+ * whose RotorCage is re-wired for each candidate with setCipherRotor() and
+ * setControlRotor(), so no objects are made per candidate except for keys that make
+ * the top list.  Nothing is left on the pool threads when the search is done.  The
+ * stepping table is not used, it would have to be rebuilt for every candidate.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        A worker per leaf task, not per pool thread.
+ *
+ ***********************************************************************/
+class KeySearch {
+    static final int ORIENTATIONS = 1 << 10;
+    static final long PERMUTATIONS = 3628800L;      // 10!
+    static final long CANDIDATES = PERMUTATIONS * ORIENTATIONS;
+
+    RotorCage start;        // index rotors and starting positions of every key tried
+    int machine;            // RotorCage.CSP889 or RotorCage.CSP2900
+    Scorer scorer;
+    int cipher[];           // the message as contacts, see ECMEngine.decipherContact()
+    int length;
+
+    int leafSize = ORIENTATIONS;            // candidates tried by one fork join task
+    ForkJoinPool pool = ForkJoinPool.commonPool();
+
+
+/***********************************************************************
+ * KeySearch - Constructor.
+ *
+ * SUMMARY:
+ * start supplies the index rotors and the starting positions of all the rotors,
+ * its cipher and control rotor orders are ignored.  The ciphertext is read with the
+ * ECMApp decipher keyboard rules, characters that are not letters are skipped.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    KeySearch(RotorCage start, int machine, CharSequence ciphertext, Scorer scorer) {
+        int i, c;
+
+        this.start = new RotorCage(start);
+        this.machine = machine;
+        this.scorer = scorer;
+        cipher = new int[ciphertext.length()];
+        length = 0;
+        for (i = 0; i < ciphertext.length(); i++) {
+            c = ECMEngine.decipherContact(ciphertext.charAt(i));
+            if (c >= 0) {
+                cipher[length++] = c;
+                }
+            }
+        return;
+        }
+
+    public void setLeafSize(int candidates) {
+
+        leafSize = Math.max(1, candidates);
+        return;
+        }
+
+    public void setPool(ForkJoinPool pool) {
+
+        this.pool = pool;
+        return;
+        }
+
+/***********************************************************************
+ * search - Finds the best scoring keys.
+ *
+ * SUMMARY:
+ * Tries candidates from up to but not including to, and returns the best topK of
+ * them, best first.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    public KeyCandidate[] search(long from, long to, int topK) {
+        PriorityQueue<KeyCandidate> best;
+        KeyCandidate result[];
+        int i;
+
+        from = Math.max(0, from);
+        to = Math.min(CANDIDATES, to);
+        if ((topK < 1) || (from >= to)) {
+            return(new KeyCandidate[0]);
+            }
+        best = pool.invoke(new KeySearchTask(this, from, to, topK));
+
+        // The heap has the worst key on top.
+        result = new KeyCandidate[best.size()];
+        for (i = result.length - 1; i >= 0; i--) {
+            result[i] = best.poll();
+            }
+        return(result);
+        }
+
+    public KeyCandidate[] search(int topK) {
+
+        return(search(0, CANDIDATES, topK));
+        }
+
+/***********************************************************************
+ * decipher - Deciphers the message with one candidate key.
+ *
+ * SUMMARY:
+ * Puts the deciphered contacts in out[] and returns their count.  Contact 25 is a
+ * space, see ECMEngine.plainChar().
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    public int decipher(long candidate, int out[]) {
+        KeySearchWorker worker = new KeySearchWorker(this);
+
+        worker.decipher(candidate);
+        System.arraycopy(worker.plain, 0, out, 0, length);
+        return(length);
+        }
+
+/***********************************************************************
+ * candidate - Converts rotor orders to a candidate number.
+ *
+ * SUMMARY:
+ * The inverse of KeySearchWorker.setCandidate().  cipherSet and controlSet are
+ * strings such as "0N1N2N3N4N" and "5N6N7N8N9N" that between them use each rotor
+ * once.  Returns -1 if they do not.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    public static long candidate(String cipherSet, String controlSet) {
+        String set = cipherSet + controlSet;
+        boolean used[] = new boolean[10];
+        long perm;
+        int orient, i, j, num, smaller;
+
+        perm = 0;
+        orient = 0;
+        for (i = 0; i < 10; i++) {
+            num = set.charAt(i * 2) - '0';
+            if ((num < 0) || (num > 9) || used[num]) {
+                return(-1);
+                }
+            smaller = 0;            // unused rotors below this one
+            for (j = 0; j < num; j++) {
+                if (!used[j]) {
+                    smaller++;
+                    }
+                }
+            used[num] = true;
+            perm = perm * (10 - i) + smaller;
+            if (set.charAt(i * 2 + 1) == 'R') {
+                orient |= 1 << i;
+                }
+            }
+        return(perm * ORIENTATIONS + orient);
+        }
+
+/***********************************************************************
+ * cipherSet, controlSet - The rotor order strings of a candidate.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    public static String cipherSet(long candidate) {
+
+        return(orderString(candidate).substring(0, 10));
+        }
+
+    public static String controlSet(long candidate) {
+
+        return(orderString(candidate).substring(10));
+        }
+
+    static String orderString(long candidate) {
+        StringBuffer set = new StringBuffer(20);
+        int rotors[] = new int[10];
+        int i;
+
+        KeySearchWorker.decode(candidate, rotors, new boolean[10]);
+        for (i = 0; i < 10; i++) {
+            set.append((char) ('0' + rotors[i]));
+            set.append((((candidate % ORIENTATIONS) >> i) & 1) != 0 ? 'R' : 'N');
+            }
+        return(set.toString());
+        }
+
+    }   // end of KeySearch
+
+
+/***********************************************************************
+ * MonogramScorer - Sum of the log frequencies of English letters.
+ *
+ * SUMMARY:
+ * The frequencies are letters per thousand of English text with about one space
+ * per five letters.  Plain Z is sent as X, so X has the count of both.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+class MonogramScorer implements Scorer {
+    static final double FREQUENCY[] = {
+        82, 15, 28, 43, 127, 22, 20, 61, 70, 2, 8, 40, 24,  // A to M
+        67, 75, 19, 1, 60, 63, 91, 28, 10, 24, 16, 20, 200  // N to Y, space
+        };
+    static final double LOG[] = new double[26];
+    static {
+        int i;
+
+        for (i = 0; i < 26; i++) {
+            LOG[i] = Math.log(FREQUENCY[i] / 1000.0);
+            }
+        }
+
+    public double score(int text[], int len) {
+        double sum = 0;
+        int i;
+
+        for (i = 0; i < len; i++) {
+            sum += LOG[text[i]];
+            }
+        return(sum);
+        }
+
+    public double score(int text[], int len, double threshold) {
+        double sum = 0;
+        int i;
+
+        for (i = 0; (i < len) && (sum >= threshold); i++) {
+            sum += LOG[text[i]];
+            }
+        return(sum);
+        }
+
+    }   // end of MonogramScorer
+
+
+/***********************************************************************
+ * KeyCandidate - One scored key.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+class KeyCandidate implements Comparable<KeyCandidate> {
+    long candidate;         // see KeySearch
+    double score;
+
+    KeyCandidate(long candidate, double score) {
+
+        this.candidate = candidate;
+        this.score = score;
+        return;
+        }
+
+    public String cipherSet() {
+
+        return(KeySearch.cipherSet(candidate));
+        }
+
+    public String controlSet() {
+
+        return(KeySearch.controlSet(candidate));
+        }
+
+    // Worst first, so a PriorityQueue has the key to drop on top.  Ties keep the
+    // lower candidate number so that results do not depend on the split.
+    public int compareTo(KeyCandidate other) {
+
+        if (score != other.score) {
+            return((score < other.score) ? -1 : 1);
+            }
+        return(Long.compare(other.candidate, candidate));
+        }
+
+    public String toString() {
+
+        return(cipherSet() + " " + controlSet() + " " + score);
+        }
+
+    }   // end of KeyCandidate
+
+
+/***********************************************************************
+ * KeySearchWorker - The RotorCage and buffers of one search thread.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+class KeySearchWorker {
+    static final int FACTORIAL[] = {362880, 40320, 5040, 720, 120, 24, 6, 2, 1, 1};
+
+    KeySearch search;
+    RotorCage cage;
+    int startCipher[] = new int[5];
+    int startControl[] = new int[5];
+    int rotors[] = new int[10];         // rotor in each place, cipher bank first
+    boolean used[] = new boolean[10];
+    int plain[];
+
+    KeySearchWorker(KeySearch search) {
+        int i;
+
+        this.search = search;
+        cage = new RotorCage(search.start);
+        cage.useStepTable(false);
+        for (i = 0; i < 5; i++) {
+            startCipher[i] = cage.cipherBank[i].pos;
+            startControl[i] = cage.controlBank[i].pos;
+            }
+        plain = new int[search.length];
+        return;
+        }
+
+/***********************************************************************
+ * decode - Finds the rotor in each place for a candidate.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    static void decode(long candidate, int rotors[], boolean used[]) {
+        int perm, i, j, digit;
+
+        perm = (int) (candidate / KeySearch.ORIENTATIONS);
+        for (i = 0; i < 10; i++) {
+            used[i] = false;
+            }
+        for (i = 0; i < 10; i++) {
+            digit = perm / FACTORIAL[i];    // the digit-th unused rotor
+            perm %= FACTORIAL[i];
+            for (j = 0; used[j] || (digit > 0); j++) {
+                if (!used[j]) {
+                    digit--;
+                    }
+                }
+            used[j] = true;
+            rotors[i] = j;
+            }
+        return;
+        }
+
+/***********************************************************************
+ * setCandidate - Wires and positions the cage for a candidate.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    void setCandidate(long candidate) {
+        int orient = (int) (candidate % KeySearch.ORIENTATIONS);
+        int i;
+
+        decode(candidate, rotors, used);
+        for (i = 0; i < 5; i++) {
+            cage.setCipherRotor(i, rotors[i], ((orient >> i) & 1) != 0);
+            cage.setControlRotor(i, rotors[i + 5], ((orient >> (i + 5)) & 1) != 0);
+            cage.cipherBank[i].pos = startCipher[i];
+            cage.controlBank[i].pos = startControl[i];
+            }
+        return;
+        }
+
+    void decipher(long candidate) {
+        int cipher[] = search.cipher;
+        int i;
+
+        setCandidate(candidate);
+        for (i = 0; i < search.length; i++) {
+            plain[i] = cage.cycle(RotorCage.DECRYPT, cipher[i], search.machine);
+            }
+        return;
+        }
+
+/***********************************************************************
+ * searchRange - Scores a range of candidates into a top list.
+ *
+ * SUMMARY:
+ * A KeyCandidate is only made for a key that will be kept.  Once the list is full
+ * the scorer may stop below the worst key kept.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        Early abort threshold.
+ *
+ ***********************************************************************/
+    void searchRange(long from, long to, int topK, PriorityQueue<KeyCandidate> best) {
+        long n;
+        double score;
+
+        for (n = from; n < to; n++) {
+            decipher(n);
+            if (best.size() < topK) {
+                score = search.scorer.score(plain, search.length);
+                }
+            else {
+                score = search.scorer.score(plain, search.length, best.peek().score);
+                }
+            if (best.size() < topK) {
+                best.add(new KeyCandidate(n, score));
+                }
+            else if (score > best.peek().score) {
+                best.poll();
+                best.add(new KeyCandidate(n, score));
+                }
+            }
+        return;
+        }
+
+    }   // end of KeySearchWorker
+
+
+/***********************************************************************
+ * KeySearchTask - Fork join task over a range of candidates.
+ *
+ * SUMMARY:
+ * Splits the range in half until it is no more than leafSize, searches the leaves
+ * on a new KeySearchWorker and merges the top lists as the tasks join.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        A worker per leaf.
+ *
+ ***********************************************************************/
+class KeySearchTask extends RecursiveTask<PriorityQueue<KeyCandidate>> {
+    private static final long serialVersionUID = 1L;
+    KeySearch search;
+    long from, to;
+    int topK;
+
+    KeySearchTask(KeySearch search, long from, long to, int topK) {
+
+        this.search = search;
+        this.from = from;
+        this.to = to;
+        this.topK = topK;
+        return;
+        }
+
+    protected PriorityQueue<KeyCandidate> compute() {
+        PriorityQueue<KeyCandidate> best, other;
+        KeySearchTask left, right;
+        KeyCandidate c;
+        long mid;
+
+        if (to - from <= search.leafSize) {
+            best = new PriorityQueue<KeyCandidate>(topK + 1);
+            new KeySearchWorker(search).searchRange(from, to, topK, best);
+            return(best);
+            }
+
+        mid = from + (to - from) / 2;
+        left = new KeySearchTask(search, from, mid, topK);
+        right = new KeySearchTask(search, mid, to, topK);
+        left.fork();
+        best = right.compute();
+        other = left.join();
+
+        // Merge the smaller list into the larger, keeping topK.
+        if (other.size() > best.size()) {
+            PriorityQueue<KeyCandidate> t = best;
+            best = other;
+            other = t;
+            }
+        while ((c = other.poll()) != null) {
+            if (best.size() < topK) {
+                best.add(c);
+                }
+            else if (c.compareTo(best.peek()) > 0) {
+                best.poll();
+                best.add(c);
+                }
+            }
+        return(best);
+        }
+
+    }   // end of KeySearchTask
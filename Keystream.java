@@ -0,0 +1,341 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/***********************************************************************
+ * Keystream - The cipher bank permutations of a key, position by position.
+ *
+ * SUMMARY:
+ * Messages sent on the same key from the same rotor positions, messages in depth,
+ * all go through the same cipher bank permutation at the first character, the same
+ * at the second and so on, whatever the text.  A Keystream steps a CageState of the
+ * key once and keeps the 26 contact permutation of each position in a byte[], with
+ * its inverse, so each message of the depth is enciphered or deciphered with one
+ * lookup per character and no rotor stepping at all.  The output is the same as
+ * ECMEngine's, with the same keyboard rules.
+ *
+ * A position costs 52 bytes, so 10,000 characters of depth cost 520 KB.  The tables
+ * grow as longer messages ask for them, and are only written under the Keystream's
+ * lock before the positions are handed out, so one Keystream can be shared by any
+ * number of threads.  KeystreamCache keeps the recently used ones.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        counted, for KeystreamCache.
+ *
+ ***********************************************************************/
+final class Keystream {
+    static final int INITIAL = 256;     // positions made for the first message
+
+    final KeySchedule key;
+    final long start;               // the starting positions, see CageState.snapshot()
+    CageState state;                // at the next position to make
+    byte enc[] = new byte[0];       // [position * 26 + plain] the cipher contact
+    byte dec[] = new byte[0];       // [position * 26 + cipher] the plain contact
+    int length;                     // positions made
+    long counted;                   // bytes() in KeystreamCache.bytes, under its lock
+
+
+/***********************************************************************
+ * Keystream - Constructor.
+ *
+ * SUMMARY:
+ * No positions are made until a message asks for them.  cipherCount of start is
+ * ignored, as the lockout is left to the caller in ECMEngine.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    Keystream(KeySchedule key, CageState start) {
+
+        this.key = key;
+        this.start = start.snapshot();
+        state = new CageState(start);
+        state.useStepTable(false);
+        return;
+        }
+
+/***********************************************************************
+ * tables - Makes at least n positions.
+ *
+ * SUMMARY:
+ * Returns the encipher table if direction is ENCRYPT, else the decipher table.  The
+ * first n positions of the returned array never change again.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    synchronized byte[] tables(boolean direction, int n) {
+        int size, p, c, e;
+
+        if (n > length) {
+            if (n * 26 > enc.length) {
+                size = Math.max(Math.max(n, 2 * length), INITIAL) * 26;
+                enc = Arrays.copyOf(enc, size);
+                dec = Arrays.copyOf(dec, size);
+                }
+            for (p = length; p < n; p++) {
+                for (c = 0; c < 26; c++) {
+                    e = key.cipherBankPath(state, KeySchedule.ENCRYPT, c);
+                    enc[p * 26 + c] = (byte) e;
+                    dec[p * 26 + e] = (byte) c;
+                    }
+                key.cipherBankRotate(state, key.moves(state));
+                key.controlBankUpdate(state);
+                }
+            length = n;
+            }
+        return((direction == KeySchedule.ENCRYPT) ? enc : dec);
+        }
+
+    // Bytes held by the tables.
+    synchronized long bytes() {
+
+        return(2L * enc.length);
+        }
+
+    synchronized int length() {
+
+        return(length);
+        }
+
+/***********************************************************************
+ * encipher, decipher - One message of the depth.
+ *
+ * SUMMARY:
+ * As the ECMEngine methods of the same name, from the starting positions.  Returns
+ * the number of characters written.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    public int encipher(CharSequence in, char out[], int outOff) {
+        byte table[];
+        int i, c, p;
+
+        table = tables(KeySchedule.ENCRYPT, in.length());
+        p = 0;
+        for (i = 0; i < in.length(); i++) {
+            c = ECMEngine.encipherContact(in.charAt(i));
+            if (c >= 0) {
+                out[outOff + p] = (char) (table[p * 26 + c] + 'A');
+                p++;
+                }
+            }
+        return(p);
+        }
+
+    public int encipher(byte in[], int inOff, int len, byte out[], int outOff) {
+        byte table[];
+        int i, c, p;
+
+        table = tables(KeySchedule.ENCRYPT, len);
+        p = 0;
+        for (i = inOff; i < inOff + len; i++) {
+            c = ECMEngine.encipherContact(in[i] & 0xff);
+            if (c >= 0) {
+                out[outOff + p] = (byte) (table[p * 26 + c] + 'A');
+                p++;
+                }
+            }
+        return(p);
+        }
+
+    public int decipher(CharSequence in, char out[], int outOff) {
+        byte table[];
+        int i, c, p;
+
+        table = tables(KeySchedule.DECRYPT, in.length());
+        p = 0;
+        for (i = 0; i < in.length(); i++) {
+            c = ECMEngine.decipherContact(in.charAt(i));
+            if (c >= 0) {
+                out[outOff + p] = ECMEngine.plainChar(table[p * 26 + c]);
+                p++;
+                }
+            }
+        return(p);
+        }
+
+    public int decipher(byte in[], int inOff, int len, byte out[], int outOff) {
+        byte table[];
+        int i, c, p;
+
+        table = tables(KeySchedule.DECRYPT, len);
+        p = 0;
+        for (i = inOff; i < inOff + len; i++) {
+            c = ECMEngine.decipherContact(in[i] & 0xff);
+            if (c >= 0) {
+                out[outOff + p] = (byte) ECMEngine.plainChar(table[p * 26 + c]);
+                p++;
+                }
+            }
+        return(p);
+        }
+
+    }   // end of Keystream
+
+
+/***********************************************************************
+ * KeystreamCache - Keeps the most recently used Keystreams within a byte budget.
+ *
+ * SUMMARY:
+ * Unlike KeyScheduleCache the entries are bounded by the bytes of their tables and
+ * not by their number, since one long message can cost as much as a thousand short
+ * ones.  After a Keystream is made or grown, the least recently used ones are
+ * dropped until the total is within maxBytes.  The one just used is always kept,
+ * even if it is over the budget alone.
+ *
+ * The map is an access ordered LinkedHashMap under the cache's lock, which is held
+ * only to look up, count and drop; the tables are made outside it.  The total is
+ * kept as Keystreams are made, grown and dropped, so a trim only walks the ones it
+ * drops.
+ *
+ * A Keystream dropped while a thread still holds it stays good for that thread.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        Running byte total.
+ *
+ ***********************************************************************/
+class KeystreamCache {
+    long maxBytes;
+    LinkedHashMap<String, Keystream> map;
+    long bytes;                 // the Keystreams in map, as last counted
+    long hits, misses, evictions;
+
+
+    KeystreamCache(long maxBytes) {
+
+        this.maxBytes = Math.max(0, maxBytes);
+        map = new LinkedHashMap<String, Keystream>(16, 0.75f, true);
+        return;
+        }
+
+/***********************************************************************
+ * get - The Keystream of a key and starting positions, with length positions made.
+ *
+ * SUMMARY:
+ * A missing Keystream is made, and a short one grown, outside the cache's lock.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        Running byte total.
+ *
+ ***********************************************************************/
+    public Keystream get(KeySchedule key, String cipherPos, String controlPos, int length) {
+        String name;
+        Keystream stream, other;
+
+        name = key + " " + cipherPos + " " + controlPos;
+        synchronized (this) {
+            stream = map.get(name);
+            if (stream != null) {
+                hits++;
+                }
+            else {
+                misses++;
+                }
+            }
+
+        if (stream == null) {
+            stream = new Keystream(key, key.newState(cipherPos, controlPos));
+            synchronized (this) {
+                other = map.get(name);
+                if (other != null) {
+                    stream = other;
+                    }
+                else {
+                    map.put(name, stream);
+                    }
+                }
+            }
+        stream.tables(KeySchedule.ENCRYPT, length);
+        trim(name, stream);
+        return(stream);
+        }
+
+    // Counts the growth of keep, if it is still the Keystream of name, then drops the
+    // least recently used Keystreams, other than keep, down to maxBytes.
+    synchronized void trim(String name, Keystream keep) {
+        Iterator<Keystream> eldest;
+        Keystream stream;
+        long b;
+
+        if (map.get(name) == keep) {
+            b = keep.bytes();
+            bytes += b - keep.counted;
+            keep.counted = b;
+            }
+        eldest = map.values().iterator();
+        while ((bytes > maxBytes) && eldest.hasNext()) {
+            stream = eldest.next();
+            if (stream != keep) {
+                bytes -= stream.counted;
+                eldest.remove();
+                evictions++;
+                }
+            }
+        return;
+        }
+
+    public synchronized long bytes() {
+
+        return(bytes);
+        }
+
+    public synchronized int size() {
+
+        return(map.size());
+        }
+
+    public synchronized long hits() {
+
+        return(hits);
+        }
+
+    public synchronized long misses() {
+
+        return(misses);
+        }
+
+    public synchronized long evictions() {
+
+        return(evictions);
+        }
+
+    public synchronized void clear() {
+
+        map.clear();
+        bytes = 0;
+        return;
+        }
+
+    public synchronized String toString() {
+
+        return(map.size() + " keystreams, " + bytes + "/" + maxBytes + " bytes, " + hits
+            + " hits, " + misses + " misses, " + evictions + " evictions");
+        }
+
+    }   // end of KeystreamCache
@@ -0,0 +1,280 @@
+/***********************************************************************
+ * MultiKeyEngine - Runs many machines with different keys side by side.
+ *
+ * SUMMARY:
+ * Key search and batch work run the same steps over many keys.  A MultiKeyEngine
+ * holds one lane per machine, each with its own KeySchedule and CageState, and
+ * cycles all the lanes together.  The tables of every lane are laid end to end in
+ * flat arrays and the rotor positions are kept by rotor and then lane, so each step
+ * of the machine is the same operation over a row of lanes: the cipher and control
+ * paths are table lookups at lane offsets and the cipher rotor moves are masks.
+ *
+ * This class does the rows one lane at a time.  VectorMultiKeyEngine, in vector/,
+ * does them with the jdk.incubator.vector API.  create() returns this engine unless
+ * the vector engine is asked for, built and started with
+ *
+ *  javac --add-modules jdk.incubator.vector *.java vector/*.java
+ *  java --add-modules jdk.incubator.vector -Decm.vector=true ...
+ *
+ * Both give the same results as RotorCage.cycle().
+ *
+ * The stepping tables are not used, they would cost 17,576 steps per lane.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        Vector engine only when asked for.
+ *
+ ***********************************************************************/
+class MultiKeyEngine {
+    static final boolean ENCRYPT = RotorCage.ENCRYPT, DECRYPT = RotorCage.DECRYPT;
+    static final int PATH = 26 * 26;                // entries in a rotor path table
+    static final int ZERO = (int) 'O' - 'A';        // see RotorCage.controlBankUpdate()
+
+    int lanes;
+    KeySchedule keys[];
+    CageState states[];
+
+    // Path tables, lane l rotor r at (l * 5 + r) * PATH.  The offsets are kept by rotor
+    // and lane in base[r * lanes + l].
+    int enc[], dec[], control[];
+    int base[];
+    int indexMoves[];       // lane l at l * 26, see RotorCage.indexMoves()
+    int indexBase[];
+    int firstCurrent[];     // control bank inputs that are on, to 'I'
+
+    // Positions [r * lanes + l], and how each rotor moves, +1 or -1.
+    int cipherPos[], controlPos[];
+    int cipherStep[], controlStep[];
+    int count[];            // cipherCount of each lane
+    int shared[];           // the input of run()
+
+
+/***********************************************************************
+ * MultiKeyEngine - Constructor.
+ *
+ * SUMMARY:
+ * Lane l runs keys[l] from states[l].  The states are read now and written back by
+ * store().
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    MultiKeyEngine(KeySchedule keys[], CageState states[]) {
+        int l, r;
+
+        this.keys = keys;
+        this.states = states;
+        lanes = keys.length;
+        enc = new int[lanes * 5 * PATH];
+        dec = new int[lanes * 5 * PATH];
+        control = new int[lanes * 5 * PATH];
+        base = new int[5 * lanes];
+        indexMoves = new int[lanes * 26];
+        indexBase = new int[lanes];
+        firstCurrent = new int[lanes];
+        cipherPos = new int[5 * lanes];
+        controlPos = new int[5 * lanes];
+        cipherStep = new int[5 * lanes];
+        controlStep = new int[5 * lanes];
+        count = new int[lanes];
+        shared = new int[lanes];
+
+        for (l = 0; l < lanes; l++) {
+            for (r = 0; r < 5; r++) {
+                base[r * lanes + l] = (l * 5 + r) * PATH;
+                System.arraycopy(keys[l].encPath[r], 0, enc, (l * 5 + r) * PATH, PATH);
+                System.arraycopy(keys[l].decPath[r], 0, dec, (l * 5 + r) * PATH, PATH);
+                System.arraycopy(keys[l].controlPath[r], 0, control, (l * 5 + r) * PATH, PATH);
+                cipherStep[r * lanes + l] = (keys[l].cipherMove[r][0] == 1) ? 1 : -1;
+                controlStep[r * lanes + l] = (keys[l].controlMove[r][0] == 1) ? 1 : -1;
+                }
+            System.arraycopy(keys[l].indexMoves, 0, indexMoves, l * 26, 26);
+            indexBase[l] = l * 26;
+            firstCurrent[l] = keys[l].firstCurrent;
+            }
+        load();
+        return;
+        }
+
+/***********************************************************************
+ * create - Makes the engine to use.
+ *
+ * SUMMARY:
+ * The vector engine if the system property ecm.vector is true and it can be loaded,
+ * otherwise this engine.  The vector engine is loaded by name so that this class,
+ * and programs that use it, do not need the incubator module to compile or run.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        Vector engine only when asked for.
+ *
+ ***********************************************************************/
+    static MultiKeyEngine create(KeySchedule keys[], CageState states[]) {
+
+        if (!Boolean.getBoolean("ecm.vector")) {
+            return(new MultiKeyEngine(keys, states));
+            }
+        try {
+            return((MultiKeyEngine) Class.forName("VectorMultiKeyEngine")
+                .getDeclaredConstructor(KeySchedule[].class, CageState[].class)
+                .newInstance(keys, states));
+            }
+        catch (ReflectiveOperationException e) {
+            }
+        catch (LinkageError e) {    // jdk.incubator.vector is not in the module graph
+            }
+        return(new MultiKeyEngine(keys, states));
+        }
+
+/***********************************************************************
+ * load, store - Copy the rotor positions from and to the CageStates.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        The positions are in the CageState's RotorCage.
+ *
+ ***********************************************************************/
+    public void load() {
+        int l, r;
+
+        for (l = 0; l < lanes; l++) {
+            for (r = 0; r < 5; r++) {
+                cipherPos[r * lanes + l] = states[l].cage.cipherBank[r].pos;
+                controlPos[r * lanes + l] = states[l].cage.controlBank[r].pos;
+                }
+            count[l] = states[l].cage.cipherCount;
+            }
+        return;
+        }
+
+    public void store() {
+        int l, r;
+
+        for (l = 0; l < lanes; l++) {
+            for (r = 0; r < 5; r++) {
+                states[l].cage.cipherBank[r].pos = cipherPos[r * lanes + l];
+                states[l].cage.controlBank[r].pos = controlPos[r * lanes + l];
+                }
+            states[l].cage.cipherCount = count[l];
+            }
+        return;
+        }
+
+/***********************************************************************
+ * cycle - One character on every lane.
+ *
+ * SUMMARY:
+ * Lane l enciphers or deciphers in[inOff + l] into out[outOff + l] and moves its
+ * rotors, as RotorCage.cycle().
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    public void cycle(boolean direction, int in[], int inOff, int out[], int outOff) {
+
+        cycleLanes(0, lanes, direction, in, inOff, out, outOff);
+        return;
+        }
+
+    // Lanes from up to but not including to, one at a time.
+    void cycleLanes(int from, int to, boolean direction, int in[], int inOff, int out[],
+            int outOff) {
+        int l, r, j, c, moves, p;
+
+        for (l = from; l < to; l++) {
+            c = in[inOff + l];
+            if (direction == ENCRYPT) {
+                for (r = 0; r <= 4; r++) {
+                    c = enc[base[r * lanes + l] + cipherPos[r * lanes + l] * 26 + c];
+                    }
+                }
+            else {
+                for (r = 4; r >= 0; r--) {
+                    c = dec[base[r * lanes + l] + cipherPos[r * lanes + l] * 26 + c];
+                    }
+                }
+            out[outOff + l] = c;
+
+            // The cipher rotors that move, see RotorCage.cipherBankMoves().
+            moves = 0;
+            for (j = firstCurrent[l]; j <= (int) 'I' - 'A'; j++) {
+                c = j;
+                for (r = 4; r >= 0; r--) {
+                    c = control[base[r * lanes + l] + controlPos[r * lanes + l] * 26 + c];
+                    }
+                moves |= indexMoves[indexBase[l] + c];
+                }
+            for (r = 0; r < 5; r++) {
+                if ((moves & (1 << r)) != 0) {
+                    p = cipherPos[r * lanes + l] + cipherStep[r * lanes + l];
+                    cipherPos[r * lanes + l] = (p + 26) % 26;
+                    }
+                }
+            if ((moves & 0x11) != 0) {
+                count[l] = 0;
+                }
+
+            // The control bank "water meter".
+            if (controlPos[2 * lanes + l] == ZERO) {
+                if (controlPos[3 * lanes + l] == ZERO) {
+                    controlPos[lanes + l] =
+                        (controlPos[lanes + l] + controlStep[lanes + l] + 26) % 26;
+                    }
+                controlPos[3 * lanes + l] =
+                    (controlPos[3 * lanes + l] + controlStep[3 * lanes + l] + 26) % 26;
+                }
+            controlPos[2 * lanes + l] =
+                (controlPos[2 * lanes + l] + controlStep[2 * lanes + l] + 26) % 26;
+            }
+        return;
+        }
+
+/***********************************************************************
+ * run - The same text through every lane.
+ *
+ * SUMMARY:
+ * For key search, every lane deciphers or enciphers text[0 .. len - 1].  Character
+ * t of lane l is put in out[t * lanes + l].
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    public void run(boolean direction, int text[], int len, int out[]) {
+        int t, l;
+
+        for (t = 0; t < len; t++) {
+            for (l = 0; l < lanes; l++) {
+                shared[l] = text[t];
+                }
+            cycle(direction, shared, 0, out, t * lanes);
+            }
+        return;
+        }
+
+    public int lanes() {
+
+        return(lanes);
+        }
+
+    }   // end of MultiKeyEngine
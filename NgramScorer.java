@@ -0,0 +1,217 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/***********************************************************************
+ * NgramScorer - Sum of the log probabilities of the n-grams of a text.
+ *
+ * SUMMARY:
+ * The n-grams are over the 26 deciphered contacts, where contact 25 is a space, so
+ * the table is indexed directly by the contacts that RotorCage.cycle() returns:
+ * c[0] * 26^(n-1) + ... + c[n-1].  An n-gram never seen gets the log probability of
+ * a hundredth of one occurrence.
+ *
+ * The counts come from sample text, train(), or from a file of lines "NGRAM count",
+ * load().  Both are read with the encipher keyboard rules: Z is X, and a space, an
+ * underscore or any other character that is not a letter is one space.
+ *
+ * The table is only read after it is made, so one NgramScorer can be shared by all
+ * the search threads.
+ *
+ * No log probability is above zero, so with a threshold the sum stops as soon as
+ * it falls below.  OffHeapNgramScorer keeps the same table out of the heap.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        Early abort threshold.
+ *
+ ***********************************************************************/
+class NgramScorer implements Scorer {
+    static final int SPACE = (int) 'Z' - 'A';       // the contact printed as a space
+
+    int n;                  // letters in an n-gram, 1 to 5
+    int size;               // 26^n
+    int prefix;             // 26^(n-1), the weight of the first contact of an index
+    float logp[];           // log probability of each n-gram
+    float floor;            // log probability of an n-gram never seen
+
+
+/***********************************************************************
+ * NgramScorer - Constructor.
+ *
+ * SUMMARY:
+ * counts[] has 26^n entries, indexed as the table.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    NgramScorer(int n, long counts[]) {
+        double total;
+        int i;
+
+        this.n = n;
+        size = counts.length;
+        prefix = size / 26;
+        logp = new float[size];
+        total = 0;
+        for (i = 0; i < size; i++) {
+            total += counts[i];
+            }
+        total = Math.max(total, 1);
+        floor = (float) Math.log(0.01 / total);
+        for (i = 0; i < size; i++) {
+            logp[i] = (counts[i] > 0) ? (float) Math.log(counts[i] / total) : floor;
+            }
+        return;
+        }
+
+    static int tableSize(int n) {
+
+        if ((n < 1) || (n > 5)) {
+            throw new IllegalArgumentException(n + "-grams");
+            }
+        return((int) Math.pow(26, n));
+        }
+
+    // The contact of a sample character, SPACE for anything not a letter.
+    static int contact(char ch) {
+        int c;
+
+        c = ECMEngine.encipherContact(ch);
+        return((c < 0) ? SPACE : c);
+        }
+
+/***********************************************************************
+ * count - Counts the n-grams of sample text.
+ *
+ * SUMMARY:
+ * Runs of spaces count as one space.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    static long[] count(int n, CharSequence text) {
+        long counts[] = new long[tableSize(n)];
+        int i, c, last, index, have;
+
+        index = 0;
+        have = 0;           // contacts in index
+        last = SPACE;
+        for (i = 0; i < text.length(); i++) {
+            c = contact(text.charAt(i));
+            if ((c == SPACE) && (last == SPACE)) {
+                continue;
+                }
+            last = c;
+            index = (index % (counts.length / 26)) * 26 + c;
+            if (++have >= n) {
+                counts[index]++;
+                }
+            }
+        return(counts);
+        }
+
+/***********************************************************************
+ * readCounts - Reads n-gram counts, one "NGRAM count" per line.
+ *
+ * SUMMARY:
+ * Lines of other lengths are skipped, so a file of mixed n-grams may be used.
+ * N-grams that are the same under the keyboard rules, QUIZ and QUIX, are added.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    static long[] readCounts(int n, Reader in) throws IOException {
+        BufferedReader lines = new BufferedReader(in);
+        long counts[] = new long[tableSize(n)];
+        String line, parts[];
+        int i, index;
+
+        while ((line = lines.readLine()) != null) {
+            parts = line.trim().split("[\\s,]+");
+            if ((parts.length != 2) || (parts[0].length() != n)) {
+                continue;
+                }
+            index = 0;
+            for (i = 0; i < n; i++) {
+                index = index * 26 + contact(parts[0].charAt(i));
+                }
+            try {
+                counts[index] += Long.parseLong(parts[1]);
+                }
+            catch (NumberFormatException e) {
+                throw new IOException("bad count: " + line);
+                }
+            }
+        return(counts);
+        }
+
+    static NgramScorer train(int n, CharSequence text) {
+
+        return(new NgramScorer(n, count(n, text)));
+        }
+
+    static NgramScorer load(int n, Path file) throws IOException {
+
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+            return(new NgramScorer(n, readCounts(n, in)));
+            }
+        }
+
+/***********************************************************************
+ * score - The log probability of the n-grams of text[0 .. len - 1].
+ *
+ * SUMMARY:
+ * With a threshold the sum stops as soon as it is below, see Scorer.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        One loop, for both.
+ *
+ ***********************************************************************/
+    public double score(int text[], int len) {
+
+        return(score(text, len, Double.NEGATIVE_INFINITY));
+        }
+
+    public double score(int text[], int len, double threshold) {
+        double sum;
+        int i, index;
+
+        if (len < n) {
+            return(0);
+            }
+        index = 0;
+        for (i = 0; i < n; i++) {
+            index = index * 26 + text[i];
+            }
+        sum = logp[index];
+        for (i = n; (i < len) && (sum >= threshold); i++) {
+            index = (index - text[i - n] * prefix) * 26 + text[i];    // drop the first
+            sum += logp[index];
+            }
+        return(sum);
+        }
+
+    }   // end of NgramScorer
@@ -0,0 +1,214 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/***********************************************************************
+ * OffHeapNgramScorer - NgramScorer with its table in a mapped file.
+ *
+ * SUMMARY:
+ * A quadgram table is 26^4 floats, 1.8 MB, and a 5-gram table 47 MB.  Kept on the
+ * heap, every search process loads and collects its own copy.  Here the table is a
+ * file mapped read only, so the processes of one machine share the pages of the
+ * operating system cache and the table costs no heap.  The table is indexed by the
+ * contacts 0 to 25 as in NgramScorer, with the same early abort threshold.
+ *
+ * JDK 17 has MemorySegment only as an incubator module, so the file is mapped with
+ * FileChannel.map() and read through a FloatBuffer view.  Only absolute get(int) is
+ * used, which does not move the buffer position, so one OffHeapNgramScorer can be
+ * shared by all the search threads.
+ *
+ * The file is a 16 byte header, "NGRM", n, the floor log probability and a zero,
+ * then the 26^n log probabilities, all little endian.  write() makes one from the
+ * counts of an NgramScorer:
+ *
+ *  java OffHeapNgramScorer 4 english_quadgrams.txt quad.ngrm
+ *  java OffHeapNgramScorer 4 -train sample.txt quad.ngrm
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+class OffHeapNgramScorer implements Scorer {
+    static final int MAGIC = 0x4d52474e;   // "NGRM" read little endian
+    static final int HEADER = 16;
+
+    int n;
+    int size;               // 26^n
+    int prefix;             // 26^(n-1)
+    float floor;
+    FloatBuffer logp;       // the table, out of the heap
+
+
+    OffHeapNgramScorer(ByteBuffer table) throws IOException {
+
+        table.order(ByteOrder.LITTLE_ENDIAN);
+        if ((table.capacity() < HEADER) || (table.getInt(0) != MAGIC)) {
+            throw new IOException("not an n-gram table");
+            }
+        n = table.getInt(4);
+        floor = table.getFloat(8);
+        size = NgramScorer.tableSize(n);
+        prefix = size / 26;
+        if (table.capacity() != HEADER + 4L * size) {
+            throw new IOException("n-gram table of " + table.capacity() + " bytes for n = " + n);
+            }
+        table.position(HEADER);
+        logp = table.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        return;
+        }
+
+/***********************************************************************
+ * map - Maps a table file written by write().
+ *
+ * SUMMARY:
+ * The mapping stays valid after the channel is closed.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    static OffHeapNgramScorer map(Path file) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return(new OffHeapNgramScorer(
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())));
+            }
+        }
+
+/***********************************************************************
+ * copyOf - The table of an NgramScorer in a direct buffer.
+ *
+ * SUMMARY:
+ * For a table that is not in a file, the heap copy may then be dropped.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    static OffHeapNgramScorer copyOf(NgramScorer scorer) {
+
+        try {
+            return(new OffHeapNgramScorer(table(scorer, ByteBuffer.allocateDirect(
+                HEADER + 4 * scorer.size))));
+            }
+        catch (IOException e) {     // a table made here is always good
+            throw new IllegalStateException(e);
+            }
+        }
+
+    // Puts the header and table of scorer in b and returns it rewound.
+    static ByteBuffer table(NgramScorer scorer, ByteBuffer b) {
+        int i;
+
+        b.order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(MAGIC);
+        b.putInt(scorer.n);
+        b.putFloat(scorer.floor);
+        b.putInt(0);
+        for (i = 0; i < scorer.size; i++) {
+            b.putFloat(scorer.logp[i]);
+            }
+        b.flip();
+        return(b);
+        }
+
+/***********************************************************************
+ * write - Writes the table of scorer to a file for map().
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    static void write(NgramScorer scorer, Path file) throws IOException {
+        ByteBuffer b;
+
+        b = table(scorer, ByteBuffer.allocate(HEADER + 4 * scorer.size));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (b.hasRemaining()) {
+                channel.write(b);
+                }
+            }
+        return;
+        }
+
+/***********************************************************************
+ * score - The log probability of the n-grams of text[0 .. len - 1].
+ *
+ * SUMMARY:
+ * With a threshold, stops as soon as the sum falls below it.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    public double score(int text[], int len) {
+
+        return(score(text, len, Double.NEGATIVE_INFINITY));
+        }
+
+    public double score(int text[], int len, double threshold) {
+        FloatBuffer table = logp;
+        double sum;
+        int i, index;
+
+        if (len < n) {
+            return(0);
+            }
+        index = 0;
+        for (i = 0; i < n; i++) {
+            index = index * 26 + text[i];
+            }
+        sum = table.get(index);
+        for (i = n; (i < len) && (sum >= threshold); i++) {
+            index = (index - text[i - n] * prefix) * 26 + text[i];    // drop the first
+            sum += table.get(index);
+            }
+        return(sum);
+        }
+
+    public static void main(String args[]) throws IOException {
+        NgramScorer scorer;
+        int n;
+
+        if ((args.length < 3) || ((args.length < 4) && args[1].equals("-train"))) {
+            System.err.println("usage: java OffHeapNgramScorer n counts.txt table.ngrm");
+            System.err.println("       java OffHeapNgramScorer n -train sample.txt table.ngrm");
+            System.exit(2);
+            }
+        n = Integer.parseInt(args[0]);
+        if (args[1].equals("-train")) {
+            scorer = NgramScorer.train(n, new String(Files.readAllBytes(Paths.get(args[2])),
+                StandardCharsets.ISO_8859_1));
+            write(scorer, Paths.get(args[3]));
+            }
+        else {
+            scorer = NgramScorer.load(n, Paths.get(args[1]));
+            write(scorer, Paths.get(args[2]));
+            }
+        return;
+        }
+
+    }   // end of OffHeapNgramScorer
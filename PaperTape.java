@@ -0,0 +1,85 @@
+import java.awt.TextArea;
+
+/***********************************************************************
+ * PaperTape - The printed tape of ECMApp, kept in memory.
+ *
+ * SUMMARY:
+ * Every printed character used to be appended to the TextArea, and the TextArea
+ * lays out the whole tape each time.  The machine now prints into this buffer and
+ * show() copies what was printed since the last call to the TextArea, so a burst of
+ * keys costs one append to the display.  Tearing off the tape clears the buffer and
+ * the next show() replaces the text of the TextArea.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+class PaperTape {
+    StringBuilder text = new StringBuilder();
+    int shown = 0;          // characters of text already in the TextArea
+    boolean torn = false;   // the TextArea still shows the old tape
+
+
+    public void print(String s) {
+
+        text.append(s);
+        return;
+        }
+
+    public void print(char c) {
+
+        text.append(c);
+        return;
+        }
+
+    public void tear() {
+
+        text.setLength(0);
+        shown = 0;
+        torn = true;
+        return;
+        }
+
+    public int length() {
+
+        return(text.length());
+        }
+
+    public String toString() {
+
+        return(text.toString());
+        }
+
+/***********************************************************************
+ * show - Brings the TextArea up to date with the tape.
+ *
+ * SUMMARY:
+ * Returns true if the TextArea was changed.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    public boolean show(TextArea area) {
+
+        if (torn) {
+            area.setText(text.toString());
+            }
+        else if (shown < text.length()) {
+            area.appendText(text.substring(shown));
+            }
+        else {
+            return(false);
+            }
+        torn = false;
+        shown = text.length();
+        return(true);
+        }
+
+    }   // end of PaperTape
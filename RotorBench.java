@@ -0,0 +1,311 @@
+import java.lang.management.ManagementFactory;
+
+/***********************************************************************
+ * RotorBench - Timing of the rotor hot paths.
+ *
+ * SUMMARY:
+ * Times the single character cycle, each of the bank paths, cipherBankUpdate and
+ * bulk ECMEngine throughput, for the CSP-889 and CSP-2900 and for normal and reversed
+ * rotors.  Each benchmark is warmed up and then measured several times.  It prints
+ * characters (or calls) per second and bytes allocated per call, read from the
+ * thread allocation counter the way the JMH GC profiler does.
+ *
+ *  java RotorBench                 run everything
+ *  java RotorBench cycle bulk      run the benchmarks whose names contain a word
+ *  java RotorBench -check          check that the per character paths allocate
+ *                                  nothing, exits with status 1 if they do
+ *
+ * multiKey runs MultiKeyEngine.create() over 64 lanes, which is the vector engine
+ * when started with --add-modules jdk.incubator.vector -Decm.vector=true.  The
+ * vector engine allocates nothing either, so -check covers it too.
+ *
+ * The benchmarks proper are ecmbench.RotorJmh, in jmh/, the same cases under JMH
+ * and its GC profiler (mvn -Pjmh package, java -jar target/benchmarks.jar -prof gc).
+ * This is a quick check beside them, plain Java with no libraries.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        multiKey benchmark.
+ * 17 Oct 26    1.02        A supplement to the JMH benchmarks.
+ *
+ ***********************************************************************/
+class RotorBench {
+    static final String NORMAL[] = {"0N1N2N3N4N", "5N6N7N8N9N", "0N1N2N3N4N"};
+    static final String REVERSED[] = {"0R1N2R3N4R", "5R6N7R8N9R", "0R1N2R3N4R"};
+
+    static final String BENCHES[] = {
+        "cycle", "cycleStepTable", "cipherBankPathEnc", "cipherBankPathDec",
+        "controlBankPath", "indexBankPath", "cipherBankUpdate", "bulkEncipher",
+        "bulkEncipherParallel", "multiKey"
+        };
+
+    static final int WARMUPS = 5;           // untimed runs of each benchmark
+    static final int RUNS = 5;              // timed runs of each benchmark
+    static final long RUN_NANOS = 200000000L;   // length of a run
+    static final int BULK_SIZE = 1 << 20;   // characters per bulk call
+    static final int MULTI_LANES = 64;      // keys run together by multiKey
+    static final int MULTI_SIZE = 1024;     // characters per lane per multiKey call
+
+    // The benchmarks that must not allocate anything per character.
+    static final String NO_ALLOCATION[] = {
+        "cycle", "cycleStepTable", "cipherBankUpdate", "bulkEncipher", "multiKey"
+        };
+
+    static volatile int sink;               // keeps results from being optimized away
+
+    static com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    RotorCage cage;
+    ECMEngine engine;
+    int machine;
+    byte plain[] = new byte[BULK_SIZE];
+    byte cipher[] = new byte[BULK_SIZE];
+    MultiKeyEngine multi;
+    int multiText[] = new int[MULTI_SIZE];
+    int multiOut[] = new int[MULTI_SIZE * MULTI_LANES];
+
+
+    RotorBench(String orders[], int machine) {
+        KeySchedule keys[] = new KeySchedule[MULTI_LANES];
+        CageState states[] = new CageState[MULTI_LANES];
+        int i;
+
+        this.machine = machine;
+        cage = new RotorCage(orders[0], orders[1], orders[2]);
+        cage.zeroize();
+        cage.setIndexBankPos("00000");
+        engine = new ECMEngine(cage, machine);
+
+        for (i = 0; i < BULK_SIZE; i++) {
+            plain[i] = (byte) ('A' + (i * 7) % 26);
+            }
+
+        // The same key on each lane, from different cipher rotor positions.
+        for (i = 0; i < MULTI_LANES; i++) {
+            keys[i] = new KeySchedule(cage, machine);
+            states[i] = keys[i].newState(cage.cipherBankPosToString(),
+                cage.controlBankPosToString());
+            states[i].cage.cipherBank[i % 5].pos = i % 26;
+            }
+        multi = MultiKeyEngine.create(keys, states);
+        for (i = 0; i < MULTI_SIZE; i++) {
+            multiText[i] = (i * 7) % 26;
+            }
+        return;
+        }
+
+/***********************************************************************
+ * run - Calls one benchmark ops times, returns the characters processed.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    long run(String bench, int ops) {
+        int i, c;
+
+        c = 0;
+        if (bench.equals("cycle") || bench.equals("cycleStepTable")) {
+            cage.useStepTable(bench.equals("cycleStepTable"));
+            for (i = 0; i < ops; i++) {
+                c = cage.cycle(RotorCage.ENCRYPT, (c + i) % 26, machine);
+                }
+            }
+        else if (bench.equals("cipherBankPathEnc")) {
+            for (i = 0; i < ops; i++) {
+                c = cage.cipherBankPath(RotorCage.ENCRYPT, (c + i) % 26);
+                }
+            }
+        else if (bench.equals("cipherBankPathDec")) {
+            for (i = 0; i < ops; i++) {
+                c = cage.cipherBankPath(RotorCage.DECRYPT, (c + i) % 26);
+                }
+            }
+        else if (bench.equals("controlBankPath")) {
+            for (i = 0; i < ops; i++) {
+                c = cage.controlBankPath((c + i) % 26);
+                }
+            }
+        else if (bench.equals("indexBankPath")) {
+            for (i = 0; i < ops; i++) {
+                c = cage.indexBankPath((c + i) % 10);
+                }
+            }
+        else if (bench.equals("cipherBankUpdate")) {
+            cage.useStepTable(false);
+            for (i = 0; i < ops; i++) {
+                cage.cipherBankUpdate(machine);
+                cage.controlBankUpdate();
+                }
+            c = cage.cipherBank[0].pos;
+            }
+        else if (bench.equals("bulkEncipher")) {
+            cage.useStepTable(true);
+            for (i = 0; i < ops; i++) {
+                c += engine.encipher(plain, 0, BULK_SIZE, cipher, 0);
+                }
+            sink = c;
+            return((long) ops * BULK_SIZE);
+            }
+        else if (bench.equals("bulkEncipherParallel")) {
+            cage.useStepTable(true);
+            for (i = 0; i < ops; i++) {
+                c += engine.encipherParallel(plain, 0, BULK_SIZE, cipher, 0);
+                }
+            sink = c;
+            return((long) ops * BULK_SIZE);
+            }
+        else if (bench.equals("multiKey")) {
+            for (i = 0; i < ops; i++) {
+                multi.run(RotorCage.ENCRYPT, multiText, MULTI_SIZE, multiOut);
+                }
+            sink = multiOut[0];
+            return((long) ops * MULTI_SIZE * MULTI_LANES);
+            }
+        sink = c;
+        return(ops);
+        }
+
+/***********************************************************************
+ * measure - Times one benchmark and prints a line of results.
+ *
+ * SUMMARY:
+ * The number of calls per run is doubled during warm up until a run takes about
+ * RUN_NANOS.  Reports the mean and the best of the timed runs.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    void measure(String label, String bench) {
+        int ops, i;
+        long start, nanos, chars, bytes, thread;
+        double rate, best, total;
+        long totalChars, totalBytes;
+
+        thread = Thread.currentThread().getId();
+        ops = 1;
+        for (i = 0; i < WARMUPS; i++) {
+            do {
+                start = System.nanoTime();
+                run(bench, ops);
+                nanos = System.nanoTime() - start;
+                if (nanos < RUN_NANOS / 2) {
+                    ops *= 2;
+                    }
+                } while (nanos < RUN_NANOS / 2);
+            }
+
+        best = 0;
+        total = 0;
+        totalChars = 0;
+        totalBytes = 0;
+        for (i = 0; i < RUNS; i++) {
+            bytes = threads.getThreadAllocatedBytes(thread);
+            start = System.nanoTime();
+            chars = run(bench, ops);
+            nanos = System.nanoTime() - start;
+            bytes = threads.getThreadAllocatedBytes(thread) - bytes;
+            rate = chars * 1e9 / nanos;
+            best = Math.max(best, rate);
+            total += rate;
+            totalChars += chars;
+            totalBytes += bytes;
+            }
+        System.out.printf("%-30s %-22s %14.0f %14.0f %10.3f%n", label, bench,
+            total / RUNS, best, (double) totalBytes / totalChars);
+        return;
+        }
+
+/***********************************************************************
+ * checkAllocation - Checks that a benchmark allocates nothing.
+ *
+ * SUMMARY:
+ * Warms the benchmark up so that it is compiled, then counts the bytes allocated
+ * by this thread over a run.  Returns true if there were none.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    boolean checkAllocation(String label, String bench) {
+        int i, ops;
+        long bytes, chars, thread;
+
+        // The bulk benchmarks do BULK_SIZE characters per call.
+        ops = bench.startsWith("bulk") ? 2 : bench.equals("multiKey") ? 20 : 100000;
+        thread = Thread.currentThread().getId();
+        for (i = 0; i < 20; i++) {
+            run(bench, ops);
+            }
+        bytes = threads.getThreadAllocatedBytes(thread);
+        chars = run(bench, ops);
+        bytes = threads.getThreadAllocatedBytes(thread) - bytes;
+        System.out.printf("%-30s %-22s %10d bytes in %d characters %s%n", label, bench,
+            bytes, chars, (bytes == 0) ? "ok" : "FAILED");
+        return(bytes == 0);
+        }
+
+    static boolean selected(String bench, String args[]) {
+        int i;
+
+        if (args.length == 0) {
+            return(true);
+            }
+        for (i = 0; i < args.length; i++) {
+            if (bench.toLowerCase().indexOf(args[i].toLowerCase()) >= 0) {
+                return(true);
+                }
+            }
+        return(false);
+        }
+
+    public static void main(String args[]) {
+        String labels[] = {"CSP-889 normal", "CSP-889 reversed", "CSP-2900 normal",
+            "CSP-2900 reversed"};
+        RotorBench benches[] = {
+            new RotorBench(NORMAL, RotorCage.CSP889),
+            new RotorBench(REVERSED, RotorCage.CSP889),
+            new RotorBench(NORMAL, RotorCage.CSP2900),
+            new RotorBench(REVERSED, RotorCage.CSP2900)
+            };
+        int b, i;
+        boolean ok;
+
+        if ((args.length > 0) && args[0].equals("-check")) {
+            ok = true;
+            for (i = 0; i < NO_ALLOCATION.length; i++) {
+                for (b = 0; b < benches.length; b++) {
+                    ok &= benches[b].checkAllocation(labels[b], NO_ALLOCATION[i]);
+                    }
+                }
+            System.exit(ok ? 0 : 1);
+            }
+
+        System.out.printf("%-30s %-22s %14s %14s %10s%n", "configuration", "benchmark",
+            "mean chars/s", "best chars/s", "bytes/char");
+        for (i = 0; i < BENCHES.length; i++) {
+            if (!selected(BENCHES[i], args)) {
+                continue;
+                }
+            for (b = 0; b < benches.length; b++) {
+                benches[b].measure(labels[b], BENCHES[i]);
+                }
+            }
+        return;
+        }
+
+    }   // end of RotorBench
@@ -43,6 +43,40 @@ class RotorCage {
     public IndexRotor indexBank[] = new IndexRotor[5];
     
     public int cipherCount = 0; // counter used to detect improperly installed index rotors.
+    static final int CIPHER_COUNT_LIMIT = 21;   // the keyboard locks at this count
+
+    // Optional instrumentation, see setMonitor().  null costs one test per character.
+    RotorStats monitor;
+
+    // The cipher rotors that move depend only on the positions of the control and index
+    // rotors.  During operation only control rotors 2, 3 and 4 move, so for a given key the
+    // moves can be looked up in a table of the 26^3 positions of those rotors instead of
+    // passing the currents through the control and index banks.
+    static final int STEP_TABLE_SIZE = 26 * 26 * 26;
+    boolean stepTableEnabled = false;   // use stepTable in cipherBankUpdate()
+    byte stepTable[];                   // cipher rotor move masks, see stepIndex()
+    int stepKey = -1;                   // the rotor settings stepTable was built for
+
+    // The index rotors do not move during operation, so the path from a contact on the
+    // left of the control bank through CONTROL_INDEX[], the index bank and INDEX_MAG[] to a
+    // cipher rotor magnet is kept in a table for each machine.  Each entry is the bit of
+    // the cipher rotor that moves, or 0 for the contacts a CSP-2900 does not connect.
+    int indexMoves889[] = new int[26];
+    int indexMoves2900[] = new int[26];
+    int indexMovesKey = -1;             // the index rotor settings the tables are for
+
+    // The last position strings made for display, reused until the rotors move.
+    String cipherPosString, controlPosString, indexPosString;
+    int cipherPosKey = -1, controlPosKey = -1, indexPosKey = -1;
+
+    // The control bank "water meter" visits all 26^3 positions of rotors 2, 3 and 4 in a
+    // fixed cycle.  stepOrder[] is the stepIndex() at each point of that cycle, stepCycle[]
+    // the inverse, and stepCounts[i][t] the number of times cipher rotor i moves in the
+    // first t cycles.  These let advance() skip any number of cycles at once.
+    int stepOrder[];
+    int stepCycle[];
+    int stepCounts[][];
+    byte stepCountsTable[];             // the stepTable that stepCounts was built from
 
 
 /***********************************************************************
@@ -58,10 +92,40 @@ class RotorCage {
  *   Date   Version By  Purpose of Revision
  * -------- ------- --- --------------------------------------
  * 8 Oct 96     1.00    RSP First release.
+ * 17 Oct 26    1.02        Rotors are installed by setRotorOrder().
  *      
  ***********************************************************************/
     RotorCage(String cipherSet, String controlSet, String indexSet) {
         int i;
+
+        for (i = 0; i < 5; i++) {
+            cipherBank[i] = new CipherRotor(0);
+            controlBank[i] = new ControlRotor(0);
+            indexBank[i] = new IndexRotor(0);
+            }
+        setRotorOrder(cipherSet, controlSet, indexSet);
+        return;
+        }
+
+/***********************************************************************
+ * setRotorOrder - Changes the order and orientation of all the rotors.
+ * Copyright (C) 1996, by Richard Pekelney
+ * All Rights Reserved
+ *
+ * SUMMARY:
+ * The passed strings are the same as for the constructor.  The rotor positions
+ * are not changed.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 8 Oct 96     1.00    RSP First release.
+ * 17 Oct 26    1.02        Split out of the constructor so a RotorCage can be reused.
+ *      
+ ***********************************************************************/
+    public void setRotorOrder(String cipherSet, String controlSet, String indexSet) {
+        int i;
         int cipherNum, controlNum, indexNum;
 
         // The passed strings contain the order and orientation of the rotors.
@@ -84,20 +148,124 @@ class RotorCage {
                 indexNum = 0;
                 }
             
-            // Create the rotor.
-            cipherBank[i] = new CipherRotor(cipherNum); 
-            if(cipherSet.charAt(i * 2 + 1) == 'R')
-                cipherBank[i].reverse();    
-            controlBank[i] = new ControlRotor(controlNum);
-            if(controlSet.charAt(i * 2 + 1) == 'R')
-                controlBank[i].reverse();   
-            indexBank[i] = new IndexRotor(indexNum);
-            if(indexSet.charAt(i * 2 + 1) == 'R')
-                indexBank[i].reverse(); 
+            // Install the rotor.
+            setCipherRotor(i, cipherNum, cipherSet.charAt(i * 2 + 1) == 'R');
+            setControlRotor(i, controlNum, controlSet.charAt(i * 2 + 1) == 'R');
+            setIndexRotor(i, indexNum, indexSet.charAt(i * 2 + 1) == 'R');
             }
         return;
         }
 
+/***********************************************************************
+ * setCipherRotor, setControlRotor, setIndexRotor - Changes one rotor.
+ *
+ * SUMMARY:
+ * Puts rotor wiringNum, normal or reversed, in place i of a bank and drops the
+ * tables that depended on the old rotor.  Nothing is allocated.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.02        First release.
+ *
+ ***********************************************************************/
+    public void setCipherRotor(int i, int wiringNum, boolean reversed) {
+
+        cipherBank[i].setWiring(wiringNum, reversed);
+        return;
+        }
+
+    public void setControlRotor(int i, int wiringNum, boolean reversed) {
+
+        controlBank[i].setWiring(wiringNum, reversed);
+        stepKey = -1;           // the stepping table depends on the control rotors
+        return;
+        }
+
+    public void setIndexRotor(int i, int wiringNum, boolean reversed) {
+
+        indexBank[i].setWiring(wiringNum, reversed);
+        indexMovesKey = -1;     // both tables depend on the index rotors
+        stepKey = -1;
+        return;
+        }
+
+/***********************************************************************
+ * cipherOrderString, controlOrderString, indexOrderString - The rotor orders.
+ *
+ * SUMMARY:
+ * Returns the order and orientation of a bank in the form passed to the
+ * constructor, for example "0N1R2N3N4N".
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.02        First release.
+ *
+ ***********************************************************************/
+    public String cipherOrderString() {
+
+        return(orderString(cipherBank));
+        }
+
+    public String controlOrderString() {
+
+        return(orderString(controlBank));
+        }
+
+    public String indexOrderString() {
+
+        return(orderString(indexBank));
+        }
+
+    static String orderString(Rotor bank[]) {
+        char c[] = new char[10];
+        int i;
+
+        for (i = 0; i < 5; i++) {
+            c[i * 2] = (char) ('0' + bank[i].wiring);
+            c[i * 2 + 1] = bank[i].reversed ? 'R' : 'N';
+            }
+        return(String.valueOf(c));
+        }
+
+/***********************************************************************
+ * RotorCage - Copies a RotorCage.
+ *
+ * SUMMARY:
+ * The copy has its own rotor positions and cipherCount, but shares the rotor wiring
+ * and the stepping tables, which are never changed once they are built.  Copies are
+ * used to run several parts of a message at once.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.02        First release.
+ *
+ ***********************************************************************/
+    RotorCage(RotorCage other) {
+        int i;
+
+        for (i = 0; i < 5; i++) {
+            cipherBank[i] = new CipherRotor(other.cipherBank[i]);
+            controlBank[i] = new ControlRotor(other.controlBank[i]);
+            indexBank[i] = new IndexRotor(other.indexBank[i]);
+            }
+        cipherCount = other.cipherCount;
+        monitor = other.monitor;
+        stepTableEnabled = other.stepTableEnabled;
+        stepTable = other.stepTable;
+        stepKey = other.stepKey;
+        stepOrder = other.stepOrder;
+        stepCycle = other.stepCycle;
+        stepCounts = other.stepCounts;
+        stepCountsTable = other.stepCountsTable;
+        return;
+        }
+
 /***********************************************************************
  * zeroize - Positions the cipher and control rotors with letter 'O' on top.
  * Copyright (C) 1996, by Richard Pekelney
@@ -123,16 +291,22 @@ class RotorCage {
  * Copyright (C) 1996, by Richard Pekelney
  * All Rights Reserved
  *
+ * SUMMARY:
+ * posString is five letters 'A' to 'Z'.  Throws IllegalArgumentException, leaving
+ * the rotors where they were, if it is not.
+ *
  * REVISION HISTORY:
  *
  *   Date   Version By  Purpose of Revision
  * -------- ------- --- --------------------------------------
  * 8 Oct 96     1.00    RSP First release.
+ * 17 Oct 26    1.01        Refuses a position that is not five letters.
  *      
  ***********************************************************************/
     public void setCipherBankPos(String posString) {
         int i;
     
+        checkPos(posString, 'A', 'Z');
         for(i = 0; i < 5; i++) {
         
             // if the first or last rotor changes clear the cipherCount
@@ -154,16 +328,21 @@ class RotorCage {
  * Copyright (C) 1996, by Richard Pekelney
  * All Rights Reserved
  *
+ * SUMMARY:
+ * As setCipherBankPos().
+ *
  * REVISION HISTORY:
  *
  *   Date   Version By  Purpose of Revision
  * -------- ------- --- --------------------------------------
  * 8 Oct 96     1.00    RSP First release.
+ * 17 Oct 26    1.01        Refuses a position that is not five letters.
  *      
  ***********************************************************************/
     public void setControlBankPos(String posString) {
         int i;
     
+        checkPos(posString, 'A', 'Z');
         for(i = 0; i < 5; i++) {
             controlBank[i].pos = (int) posString.charAt(i) - 'A';
             }
@@ -175,22 +354,159 @@ class RotorCage {
  * Copyright (C) 1996, by Richard Pekelney
  * All Rights Reserved
  *
+ * SUMMARY:
+ * posString is five digits.  Throws IllegalArgumentException, leaving the rotors
+ * where they were, if it is not.
+ *
  * REVISION HISTORY:
  *
  *   Date   Version By  Purpose of Revision
  * -------- ------- --- --------------------------------------
  * 8 Oct 96     1.00    RSP First release.
+ * 17 Oct 26    1.01        Refuses a position that is not five digits.
  *      
  ***********************************************************************/
     public void setIndexBankPos(String posString) {
         int i;
     
+        checkPos(posString, '0', '9');
         for(i = 0; i < 5; i++) {
             indexBank[i].pos = (int) posString.charAt(i) - '0';
             }
         return;
         }
 
+    // The rotor tables are indexed by position, so one out of range must not get in.
+    static void checkPos(String posString, char low, char high) {
+        int i;
+
+        if ((posString == null) || (posString.length() != 5)) {
+            throw new IllegalArgumentException("rotor position " + posString);
+            }
+        for (i = 0; i < 5; i++) {
+            if ((posString.charAt(i) < low) || (posString.charAt(i) > high)) {
+                throw new IllegalArgumentException("rotor position " + posString);
+                }
+            }
+        return;
+        }
+
+/***********************************************************************
+ * setMonitor - Turns instrumentation on, or off with null.
+ *
+ * SUMMARY:
+ * The monitor is told the cipher rotors that move on every cycle and when
+ * countCharacter() reaches CIPHER_COUNT_LIMIT.  One RotorStats may be shared by
+ * several RotorCages, and copies of this RotorCage share it.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.02        First release.
+ *
+ ***********************************************************************/
+    public void setMonitor(RotorStats stats) {
+
+        monitor = stats;
+        return;
+        }
+
+/***********************************************************************
+ * countCharacter - Counts an enciphered or deciphered key in cipherCount.
+ *
+ * SUMMARY:
+ * cipherCount is cleared when the first or last cipher rotor moves.  If it reaches
+ * CIPHER_COUNT_LIMIT the index rotors are probably not seated and the real machine
+ * locks its keyboard, so the monitor is told of the stall.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.02        First release.
+ *
+ ***********************************************************************/
+    public void countCharacter() {
+
+        cipherCount++;
+        if ((cipherCount == CIPHER_COUNT_LIMIT) && (monitor != null)) {
+            monitor.stalled(this);
+            }
+        return;
+        }
+
+/***********************************************************************
+ * snapshot, restore - The moving state of the machine packed in a long.
+ *
+ * SUMMARY:
+ * Bits 0 to 24 hold the cipher rotor positions and bits 25 to 49 the control rotor
+ * positions, 5 bits a rotor with rotor 0 lowest.  Bits 50 to 62 hold cipherCount,
+ * held at COUNT_MAX if it is larger.  The index rotors do not fit as well, and they
+ * do not move during a message, so they have their own indexSnapshot().  Nothing
+ * is allocated, so a snapshot can be taken every character of a long stream or
+ * used as a hash of the machine state.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.02        First release.
+ *
+ ***********************************************************************/
+    public static final int COUNT_MAX = (1 << 13) - 1;
+
+    public long snapshot() {
+        long state;
+        int i;
+
+        state = Math.min(cipherCount, COUNT_MAX);
+        for (i = 4; i >= 0; i--) {
+            state = (state << 5) | controlBank[i].pos;
+            }
+        for (i = 4; i >= 0; i--) {
+            state = (state << 5) | cipherBank[i].pos;
+            }
+        return(state);
+        }
+
+    public void restore(long state) {
+        int i;
+
+        for (i = 0; i < 5; i++) {
+            cipherBank[i].pos = (int) (state & 31);
+            state >>>= 5;
+            }
+        for (i = 0; i < 5; i++) {
+            controlBank[i].pos = (int) (state & 31);
+            state >>>= 5;
+            }
+        cipherCount = (int) (state & COUNT_MAX);
+        return;
+        }
+
+    // The index rotor positions, 4 bits a rotor with rotor 0 lowest.
+    public int indexSnapshot() {
+        int state;
+        int i;
+
+        state = 0;
+        for (i = 4; i >= 0; i--) {
+            state = (state << 4) | indexBank[i].pos;
+            }
+        return(state);
+        }
+
+    public void restoreIndex(int state) {
+        int i;
+
+        for (i = 0; i < 5; i++) {
+            indexBank[i].pos = state & 15;
+            state >>>= 4;
+            }
+        return;
+        }
+
 /***********************************************************************
  * controlBankUpdate - Updates the Control rotor positions between cycles.
  * Copyright (C) 1996, by Richard Pekelney
@@ -217,95 +533,517 @@ class RotorCage {
  ***********************************************************************/
     public void controlBankUpdate() {
 
-        if (controlBank[2].pos == (int) 'O' - 'A') {    // medium rotor moves
-            if (controlBank[3].pos == (int) 'O' - 'A') {// slow rotor moves
-                controlBank[1].rotCW();
-                }
-            controlBank[3].rotCW();
+        if (controlBank[2].pos == (int) 'O' - 'A') {    // medium rotor moves
+            if (controlBank[3].pos == (int) 'O' - 'A') {// slow rotor moves
+                controlBank[1].rotCW();
+                }
+            controlBank[3].rotCW();
+            }
+        controlBank[2].rotCW();                         // fast rotor always moves
+        return;
+        }
+
+/***********************************************************************
+ * CipherBankUpdate - Updates the cipher rotor positions between cycles.
+ * Copyright (C) 1996, by Richard Pekelney
+ * All Rights Reserved
+ *
+ * SUMMARY:
+ * cipherBankUpdate finds the cipher rotors to move with cipherBankMoves(), or with the
+ * stepping table when it is enabled, and then rotates them.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 8 Oct 96     1.00    RSP First release.
+ * 17 Oct 26    1.02        Split into cipherBankMoves() and cipherBankRotate() so that
+ *                          the moves can come from the stepping table.
+ *      
+ ***********************************************************************/
+    public void cipherBankUpdate(int machine) {
+        int moves;
+
+        if (stepTableEnabled) {
+            moves = stepTableMoves(machine);
+            }
+        else {
+            moves = cipherBankMoves(machine);
+            }
+        cipherBankRotate(moves, machine);
+        if (monitor != null) {
+            monitor.moved(moves);
+            }
+        return;
+        }
+
+/***********************************************************************
+ * cipherBankMoves - Finds the cipher rotors that move on this cycle.
+ * Copyright (C) 1996, by Richard Pekelney
+ * All Rights Reserved
+ *
+ * SUMMARY:
+ * cipherBankMoves passes 4 (or 6 for CSP 2900) currents through the control bank using
+ * controlBankPath(),
+ * then through the wiring from the control bank to the index bank using the CONTROL_INDEX[]
+ * table,
+ * then through the index bank using indexBankPath(),
+ * and finally through the wiring between the index bank and the and the magnets that rotate
+ * the cipher rotors using the INDEX_MAG[] table.  Everything after the control bank is
+ * looked up in the table from indexMoves().
+ *
+ * The result has bit i set if cipher rotor i moves.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 8 Oct 96     1.00    RSP First release.
+ * 17 Oct 26    1.02        Split out of cipherBankUpdate().  Bits instead of a move[]
+ *                          array so that nothing is allocated per character.  The
+ *                          index bank part is a lookup in indexMoves().
+ *      
+ ***********************************************************************/
+    public int cipherBankMoves(int machine) {
+        int j;
+        int moves;
+        int table[];
+
+        // The movements are stored as bits in moves because more than one of the paths
+        // through the control and index banks can connect with a single cipher rotor magnet
+        // at the same time.  Using the moves bits allows the program to be sequential even
+        // though the machine is concurrent and thereby avoid extra motions of the rotor.
+        moves = 0;
+        table = indexMoves(machine);
+        if (machine == CSP889) {
+            for (j = (int) 'F' - 'A' ; j <= (int) 'I' - 'A' ; j++) {
+                moves |= table[controlBankPath(j)];
+                }
+            }
+        else {  // This is a CSP-2900, six contacts are on instead of four.
+            for (j = (int) 'D' - 'A' ; j <= (int) 'I' - 'A' ; j++) {  
+                moves |= table[controlBankPath(j)];
+                }
+            }
+        return(moves);
+        }
+
+/***********************************************************************
+ * indexMoves - Returns the index bank table for a machine.
+ *
+ * SUMMARY:
+ * Returns the table of cipher rotor bits for each contact on the left of the control
+ * bank, building it again if an index rotor has been moved or reversed.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.02        First release.
+ *
+ ***********************************************************************/
+    int[] indexMoves(int machine) {
+        int key;
+        int i;
+
+        key = 0;
+        for (i = 0; i < 5; i++) {
+            key = (key << 5) | (indexBank[i].pos << 1) | (indexBank[i].reversed ? 1 : 0);
+            }
+        if (key != indexMovesKey) {
+            buildIndexMoves();
+            indexMovesKey = key;
+            }
+        if (machine == CSP889) {
+            return(indexMoves889);
+            }
+        return(indexMoves2900);
+        }
+
+/***********************************************************************
+ * buildIndexMoves - Fills the index bank tables.
+ *
+ * SUMMARY:
+ * Passes each of the 26 contacts through the control to index wiring, the index
+ * bank and the magnet wiring, for both machines.  On the CSP-2900 contacts P, Q and
+ * R are not connected, so they move nothing.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.02        First release.
+ *
+ ***********************************************************************/
+    void buildIndexMoves() {
+        int k;
+
+        for (k = 0; k < 26; k++) {
+            indexMoves889[k] = 1 << (INDEX_MAG[indexBankPath(CONTROL_INDEX_889[k])]-1);
+            if ( (k == (int) 'P' - 'A') || (k == (int) 'Q' - 'A') || (k == (int) 'R' - 'A') ) {
+                indexMoves2900[k] = 0;
+                }
+            else {
+                indexMoves2900[k] = 1 << (INDEX_MAG[indexBankPath(CONTROL_INDEX_2900[k])]-1);
+                }
+            }
+        return;
+        }
+
+/***********************************************************************
+ * cipherBankRotate - Rotates the cipher rotors found by cipherBankMoves().
+ * Copyright (C) 1996, by Richard Pekelney
+ * All Rights Reserved
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 8 Oct 96     1.00    RSP First release.
+ * 17 Oct 26    1.02        Split out of cipherBankUpdate().
+ *      
+ ***********************************************************************/
+    public void cipherBankRotate(int moves, int machine) {
+        int i;
+
+        if (machine == CSP889) {
+            // Between 1 and 4 cipher rotors will rotate.
+            for (i = 0 ; i < 5 ; i++) {
+                if ((moves & (1 << i)) != 0) {
+                    cipherBank[i].rotCW();
+                    // clear the cipher rotor movement counter if the first or last rotor turn.
+                    if (i == 0 || i == 4) {
+                        cipherCount = 0;
+                        }
+                    }
+                }
+            }
+        else {  // This is a CSP-2900
+            // Between 1 and 4 cipher rotors will rotate.
+            //3 In a 2900 rotors 2 and 4 ( array index 1 and 3) rotate backwards.
+            if ((moves & 1) != 0) {
+                cipherBank[0].rotCW();
+                cipherCount = 0;
+                }
+            if ((moves & 2) != 0) {
+                cipherBank[1].rotCCW();
+                }
+            if ((moves & 4) != 0) {
+                cipherBank[2].rotCW();
+                }
+            if ((moves & 8) != 0) {
+                cipherBank[3].rotCCW();
+                }
+            if ((moves & 16) != 0) {
+                cipherBank[4].rotCW();
+                cipherCount = 0;
+                }
+            }
+        return;
+        }
+
+/***********************************************************************
+ * useStepTable - Turns the cipher stepping table on or off.
+ *
+ * SUMMARY:
+ * With the stepping table on, cipherBankUpdate() looks up the cipher rotor moves by
+ * the position of control rotors 2, 3 and 4.  The table is built the first time it is
+ * needed for a key, which costs about as much as enciphering 17,576 characters, so it
+ * only pays for long messages.  It is rebuilt if control rotor 1 or 5, or the index
+ * rotors, or the machine type change.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.02        First release.
+ *
+ ***********************************************************************/
+    public void useStepTable(boolean on) {
+
+        stepTableEnabled = on;
+        return;
+        }
+
+/***********************************************************************
+ * stepIndex - Packs the positions of control rotors 2, 3 and 4.
+ *
+ * SUMMARY:
+ * The slow rotor (2) is most significant and the fast rotor (3) least, so
+ * the index is the reading of the control bank "water meter".
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.02        First release.
+ *
+ ***********************************************************************/
+    public int stepIndex() {
+
+        return((controlBank[1].pos * 26 + controlBank[3].pos) * 26 + controlBank[2].pos);
+        }
+
+/***********************************************************************
+ * stepTableKey - Packs the settings that the stepping table depends on.
+ *
+ * SUMMARY:
+ * Control rotors 1 and 5 in 5 bits each, the index rotors in 4 bits each and
+ * the machine type in the top bit.  The rotor order is fixed for a RotorCage.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.02        First release.
+ *
+ ***********************************************************************/
+    int stepTableKey(int machine) {
+        int key;
+        int i;
+
+        key = controlBank[0].pos | (controlBank[4].pos << 5);
+        for (i = 0; i < 5; i++) {
+            key |= indexBank[i].pos << (10 + 4 * i);
+            }
+        if (machine != CSP889) {
+            key |= 1 << 30;
+            }
+        return(key);
+        }
+
+/***********************************************************************
+ * stepTableMoves - Looks up the cipher rotor moves in the stepping table.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.02        First release.
+ *
+ ***********************************************************************/
+    int stepTableMoves(int machine) {
+        int key;
+
+        key = stepTableKey(machine);
+        if (key != stepKey) {
+            buildStepTable(machine);
+            stepKey = key;
+            }
+        return(stepTable[stepIndex()]);
+        }
+
+/***********************************************************************
+ * buildStepTable - Fills the stepping table for the current key.
+ *
+ * SUMMARY:
+ * Runs cipherBankMoves() for every position of control rotors 2, 3 and 4 and then
+ * puts those rotors back.  A new array is made each time so that a table can be
+ * shared by copies of the RotorCage.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.02        First release.
+ *
+ ***********************************************************************/
+    void buildStepTable(int machine) {
+        byte table[] = new byte[STEP_TABLE_SIZE];
+        int slow, medium, fast;
+        int savedSlow, savedMedium, savedFast;
+
+        savedSlow = controlBank[1].pos;
+        savedMedium = controlBank[3].pos;
+        savedFast = controlBank[2].pos;
+        for (slow = 0; slow < 26; slow++) {
+            controlBank[1].pos = slow;
+            for (medium = 0; medium < 26; medium++) {
+                controlBank[3].pos = medium;
+                for (fast = 0; fast < 26; fast++) {
+                    controlBank[2].pos = fast;
+                    table[stepIndex()] = (byte) cipherBankMoves(machine);
+                    }
+                }
+            }
+        controlBank[1].pos = savedSlow;
+        controlBank[3].pos = savedMedium;
+        controlBank[2].pos = savedFast;
+        stepTable = table;
+        return;
+        }
+
+/***********************************************************************
+ * buildStepCycle - Fills the tables used by advance().
+ *
+ * SUMMARY:
+ * Runs controlBankUpdate() around the whole cycle of control rotors 2, 3 and 4 to
+ * record the order of the positions, then counts the moves of each cipher rotor
+ * along the cycle.  The control rotors are put back afterwards.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.02        First release.
+ *
+ ***********************************************************************/
+    void buildStepCycle() {
+        int order[] = new int[STEP_TABLE_SIZE];
+        int cycle[] = new int[STEP_TABLE_SIZE];
+        int counts[][] = new int[5][STEP_TABLE_SIZE + 1];
+        int savedSlow, savedMedium, savedFast;
+        int i, t, moves;
+
+        savedSlow = controlBank[1].pos;
+        savedMedium = controlBank[3].pos;
+        savedFast = controlBank[2].pos;
+        for (t = 0; t < STEP_TABLE_SIZE; t++) {
+            order[t] = stepIndex();
+            cycle[order[t]] = t;
+            controlBankUpdate();
+            }
+        controlBank[1].pos = savedSlow;
+        controlBank[3].pos = savedMedium;
+        controlBank[2].pos = savedFast;
+
+        for (t = 0; t < STEP_TABLE_SIZE; t++) {
+            moves = stepTable[order[t]];
+            for (i = 0; i < 5; i++) {
+                counts[i][t + 1] = counts[i][t] + ((moves >> i) & 1);
+                }
+            }
+        stepOrder = order;
+        stepCycle = cycle;
+        stepCounts = counts;
+        stepCountsTable = stepTable;
+        return;
+        }
+
+/***********************************************************************
+ * prepareStepCycle - Builds the tables advance() needs for the current key.
+ *
+ * SUMMARY:
+ * Called before copying a RotorCage so that the copies share the tables instead of
+ * each building their own.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.02        First release.
+ *
+ ***********************************************************************/
+    public void prepareStepCycle(int machine) {
+        int key;
+
+        key = stepTableKey(machine);
+        if (key != stepKey) {
+            buildStepTable(machine);
+            stepKey = key;
+            }
+        if (stepCountsTable != stepTable) {
+            buildStepCycle();
             }
-        controlBank[2].rotCW();                         // fast rotor always moves
         return;
         }
 
 /***********************************************************************
- * CipherBankUpdate - Updates the cipher rotor positions between cycles.
- * Copyright (C) 1996, by Richard Pekelney
- * All Rights Reserved
+ * advance - Moves the rotors as if cycle() had been called n times.
  *
  * SUMMARY:
- * cipherBankUpdate passes 4 (or 6 for CSP 2900) currents through the control bank using
- * controlBankPath(),
- * then through the wiring from the control bank to the index bank using the CONTROL_INDEX[]
- * table,
- * then through the index bank using indexBankPath(),
- * and finally through the wiring between the index bank and the and the magnets that rotate
- * the cipher rotors using the INDEX_MAG[] table.
+ * The cipher rotor moves depend only on the position of control rotors 2, 3 and 4,
+ * which repeat every 26^3 cycles.  The moves of each cipher rotor over n cycles are
+ * therefore the moves over whole periods of the control bank plus the moves over
+ * part of one, both read from stepCounts.  The time taken does not depend on n.
+ *
+ * cipherCount is cleared if the first or last cipher rotor moved, as in cycle().
+ * Returns the number of cycles since the last one that cleared cipherCount,
+ * including that one, or -1 if cipherCount was not cleared.
  *
  * REVISION HISTORY:
  *
  *   Date   Version By  Purpose of Revision
  * -------- ------- --- --------------------------------------
- * 8 Oct 96     1.00    RSP First release.
- *      
+ * 17 Oct 26    1.02        First release.
+ *
  ***********************************************************************/
-    public void cipherBankUpdate(int machine) {
-        boolean move[] = new boolean[5];
-        int i, j, k;
+    public long advance(long n, int machine) {
+        int t0, part, t, i, k, moves;
+        long whole, count, back;
 
-        for (i = 0 ; i < 5 ; i++)
-            move[i] = false;
+        prepareStepCycle(machine);
+        if (n <= 0) {
+            return(-1);
+            }
 
-        // The movements are stored in move[] because more than one of the paths through
-        // the control and index banks can connect with a single cipher rotor magnet at the
-        // same time.  Using the move[] array allows the program to be sequential even though
-        // the machine is concurrent and thereby avoid extra motions of the rotor.
-        if (machine == CSP889) {
-            for (j = (int) 'F' - 'A' ; j <= (int) 'I' - 'A' ; j++) {
-                move[INDEX_MAG[indexBankPath(CONTROL_INDEX_889[controlBankPath(j)])]-1] = true;
+        t0 = stepCycle[stepIndex()];
+        whole = n / STEP_TABLE_SIZE;
+        part = (int) (n % STEP_TABLE_SIZE);
+
+        // Move each cipher rotor by its count of moves, modulo the 26 positions.
+        for (i = 0; i < 5; i++) {
+            count = whole * stepCounts[i][STEP_TABLE_SIZE];
+            if (t0 + part <= STEP_TABLE_SIZE) {
+                count += stepCounts[i][t0 + part] - stepCounts[i][t0];
                 }
-                
-            // Between 1 and 4 cipher rotors will rotate.
-            for (i = 0 ; i < 5 ; i++) {
-                if (move[i]) {
+            else {
+                count += stepCounts[i][STEP_TABLE_SIZE] - stepCounts[i][t0]
+                    + stepCounts[i][t0 + part - STEP_TABLE_SIZE];
+                }
+            for (k = (int) (count % 26); k > 0; k--) {
+                // In a 2900 rotors 2 and 4 ( array index 1 and 3) rotate backwards.
+                if ((machine != CSP889) && ((i == 1) || (i == 3))) {
+                    cipherBank[i].rotCCW();
+                    }
+                else {
                     cipherBank[i].rotCW();
-                    // clear the cipher rotor movement counter if the first or last rotor turn.
-                    if (i == 0 || i == 4) {
-                        cipherCount = 0;
-                        }
                     }
                 }
             }
-        else {  // This is a CSP-2900, there are three changes.
-            //1 Six contacts are on instead of four.
-            loop: for (j = (int) 'D' - 'A' ; j <= (int) 'I' - 'A' ; j++) {  
-                //2 The control/index wiring is changed and contacts P, Q and R are not connected.
-                k = controlBankPath(j); 
-                if ( (k == (int) 'P' - 'A') || (k == (int) 'Q' - 'A') || (k == (int) 'R' - 'A') ) {
-                    continue loop;  // Skip contacts P, Q and R since they are not connected.
-                    }
-                move[INDEX_MAG[indexBankPath(CONTROL_INDEX_2900[k])]-1] = true;
-                }
-            // Between 1 and 4 cipher rotors will rotate.
-            //3 In a 2900 rotors 2 and 4 ( array index 1 and 3) rotate backwards.
-            if (move[0]) {
-                cipherBank[0].rotCW();
-                cipherCount = 0;
-                }
-            if (move[1]) {
-                cipherBank[1].rotCCW();
-                }
-            if (move[2]) {
-        cipherBank[2].rotCW();
-        }
-            if (move[3]) {
-                cipherBank[3].rotCCW();
-                }
-            if (move[4]) {
-                cipherBank[4].rotCW();
+
+        // Put the control rotors where the meter is after n cycles.
+        t = stepOrder[(t0 + part) % STEP_TABLE_SIZE];
+        controlBank[1].pos = t / (26 * 26);
+        controlBank[3].pos = (t / 26) % 26;
+        controlBank[2].pos = t % 26;
+
+        // Look back from the last cycle for a move of the first or last cipher rotor.
+        for (back = 0; (back < n) && (back < STEP_TABLE_SIZE); back++) {
+            t = (int) ((t0 + part - 1 - back + 2 * STEP_TABLE_SIZE) % STEP_TABLE_SIZE);
+            moves = stepTable[stepOrder[t]];
+            if ((moves & 0x11) != 0) {
                 cipherCount = 0;
+                return(back + 1);
                 }
             }
-        return;
+        return(-1);
+        }
+
+/***********************************************************************
+ * cycle - Enciphers or deciphers one character and steps the rotors.
+ *
+ * SUMMARY:
+ * This is the part of ECMApp.ECMcycle() that does not involve the keyboard, printer
+ * or displays, so that it can be used without the applet.  The character passed in
+ * and the one returned use the internal 0-25 representation.  cipherCount is not
+ * incremented here, since ECMApp only counts enciphered and deciphered keys, not
+ * the Blank key.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.02        Split out of ECMApp.ECMcycle().
+ *
+ ***********************************************************************/
+    public int cycle(boolean direction, int in, int machine) {
+        int out;
+
+        out = cipherBankPath(direction, in);    // encipher or decipher the character
+        cipherBankUpdate(machine);              // Rotate 1 to 4 cipher rotors.
+        controlBankUpdate();                    // Rotate the control rotors in meter fashion.
+        return(out);
         }
 
 /***********************************************************************
@@ -395,16 +1133,30 @@ class RotorCage {
  *   Date   Version By  Purpose of Revision
  * -------- ------- --- --------------------------------------
  * 8 Oct 96     1.00    RSP First release.
+ * 17 Oct 26    1.02        Reuse the last string if the rotors have not moved.
  *      
  ***********************************************************************/
     public String cipherBankPosToString() {
-        char c[] = new char[5];
+        char c[];
         int rotNum;
-        
+        int key;
+
+        // The string is only made again if a rotor has moved since the last call.
+        key = 0;
+        for (rotNum = 0 ; rotNum < 5 ; rotNum++) {
+            key = (key << 5) | cipherBank[rotNum].pos;
+            }
+        if (key == cipherPosKey) {
+            return(cipherPosString);
+            }
+
+        c = new char[5];
         for (rotNum = 0 ; rotNum < 5 ; rotNum++) {
             c[rotNum] = (char) (cipherBank[rotNum].pos + (int) 'A');
             }
-        return(String.valueOf(c));
+        cipherPosString = String.valueOf(c);
+        cipherPosKey = key;
+        return(cipherPosString);
         }
         
 /***********************************************************************
@@ -417,16 +1169,30 @@ class RotorCage {
  *   Date   Version By  Purpose of Revision
  * -------- ------- --- --------------------------------------
  * 8 Oct 96     1.00    RSP First release.
+ * 17 Oct 26    1.02        Reuse the last string if the rotors have not moved.
  *      
  ***********************************************************************/
     public String controlBankPosToString() {
-        char c[] = new char[5];
+        char c[];
         int rotNum;
-        
+        int key;
+
+        // The string is only made again if a rotor has moved since the last call.
+        key = 0;
+        for (rotNum = 0 ; rotNum < 5 ; rotNum++) {
+            key = (key << 5) | controlBank[rotNum].pos;
+            }
+        if (key == controlPosKey) {
+            return(controlPosString);
+            }
+
+        c = new char[5];
         for (rotNum = 0 ; rotNum < 5 ; rotNum++) {
             c[rotNum] = (char) (controlBank[rotNum].pos + (int) 'A');
             }
-        return(String.valueOf(c));
+        controlPosString = String.valueOf(c);
+        controlPosKey = key;
+        return(controlPosString);
         }
 
 /***********************************************************************
@@ -443,16 +1209,30 @@ class RotorCage {
  *   Date   Version By  Purpose of Revision
  * -------- ------- --- --------------------------------------
  * 8 Oct 96     1.00    RSP First release.
+ * 17 Oct 26    1.02        Reuse the last string if the rotors have not moved.
  *      
  ***********************************************************************/
     public String indexBankPosToString() {
-        char c[] = new char[5];
+        char c[];
         int rotNum;
-        
+        int key;
+
+        // The string is only made again if a rotor has moved since the last call.
+        key = 0;
+        for (rotNum = 0 ; rotNum < 5 ; rotNum++) {
+            key = (key << 4) | indexBank[rotNum].pos;
+            }
+        if (key == indexPosKey) {
+            return(indexPosString);
+            }
+
+        c = new char[5];
         for (rotNum = 0 ; rotNum < 5 ; rotNum++) {
             c[rotNum] = (char) (indexBank[rotNum].pos + (int) '0');
             }
-        return(String.valueOf(c));
+        indexPosString = String.valueOf(c);
+        indexPosKey = key;
+        return(indexPosString);
         }
         
     }   // end of RotorCage
@@ -538,6 +1318,23 @@ class Rotor {
     // zero on top.
     public int pos;         // Position of the rotor.
     public boolean reversed;    // Is this rotor reversed?
+    int wiring;             // The rotor number, i.e. the index into WIRING or INDEXWIRING.
+
+    // The next position of a rotor in each direction, so rotCW() and rotCCW() are a
+    // table lookup instead of a test of reversed and a mod.  cw is the table for
+    // rotCW() and ccw for rotCCW(); reverse() swaps them.
+    static final int NEXT[] = new int[26];
+    static final int PREV[] = new int[26];
+    static {
+        int i;
+
+        for (i = 0; i < 26; i++) {
+            NEXT[i] = (i + 1) % 26;
+            PREV[i] = (i - 1 + 26) % 26;    // Adding 26 guarantees a positive value.
+            }
+        }
+    int cw[] = PREV;        // Normal rotors decrease clockwise.
+    int ccw[] = NEXT;
 
 
 /***********************************************************************
@@ -555,17 +1352,12 @@ class Rotor {
  *   Date   Version By  Purpose of Revision
  * -------- ------- --- --------------------------------------
  * 8 Oct 96     1.00    RSP First release.
+ * 17 Oct 26    1.02        Table lookup, see cw and ccw.
  *      
  ***********************************************************************/
     public int rotCW() {
-                    
-        if (reversed) {             // Reversed rotors increase counter clockwise.
-            pos = (pos + 1) % 26;
-            }
-        else {
-            pos = (pos - 1 + 26) % 26;  // Adding 26 guarantees a positive value.
-            }
-            
+
+        pos = cw[pos];      // Reversed rotors increase counter clockwise, see setWiring().
         return(pos);
         }
 
@@ -583,17 +1375,12 @@ class Rotor {
  *   Date   Version By  Purpose of Revision
  * -------- ------- --- --------------------------------------
  * 8 Oct 96     1.00    RSP First release.
+ * 17 Oct 26    1.02        Table lookup, see cw and ccw.
  *      
  ***********************************************************************/
     public int rotCCW() {
 
-        if (reversed) {                 // Reversed rotors increase counter clockwise.
-            pos = (pos - 1 + 26) % 26;  // Adding 26 guarantees a positive value.
-            }
-        else {                          // Normal rotor increase clockwise.
-            pos = (pos + 1) % 26;
-            }
-            
+        pos = ccw[pos];     // Normal rotor increase clockwise.
         return(pos);
         }
 
@@ -604,20 +1391,117 @@ class Rotor {
  *
  * SUMMARY:
  * Reversed rotors can be thought of as upside and backwards rotors.  This routine
- * just provides an interface to the reversed variable.
+ * sets the reversed variable and rebuilds the tables that depend on it.
  *
  * REVISION HISTORY:
  *
  *   Date   Version By  Purpose of Revision
  * -------- ------- --- --------------------------------------
  * 8 Oct 96     1.00    RSP First release.
+ * 17 Oct 26    1.02        Swap the rotation and path tables with setWiring().
  *      
  ***********************************************************************/
     public void reverse() {
 
-        reversed = true;
+        setWiring(wiring, true);
         return;
         } 
+
+/***********************************************************************
+ * setWiring() - Changes the rotor in this place of the cage.
+ *
+ * SUMMARY:
+ * Puts rotor wiringNum in this place, normal or reversed, without moving it.  The
+ * path tables of every rotor are made once and shared, so this only changes which
+ * tables the rotor uses and allocates nothing.  Used to try many rotor orders
+ * with the same RotorCage.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.02        First release.
+ *
+ ***********************************************************************/
+    public void setWiring(int wiringNum, boolean rev) {
+
+        wiring = wiringNum;
+        reversed = rev;
+        if (reversed) {
+            cw = NEXT;      // Reversed rotors increase counter clockwise.
+            ccw = PREV;
+            }
+        else {
+            cw = PREV;
+            ccw = NEXT;
+            }
+        selectPaths();
+        return;
+        }
+
+    void selectPaths() {    // Each kind of rotor picks its tables for wiring and reversed.
+
+        return;
+        }
+
+/***********************************************************************
+ * wiringTables() - Makes the left to right and right to left wiring tables.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.02        First release.
+ *
+ ***********************************************************************/
+    static int[][] wiringTables(int wiringRow[], int base) {
+        int table[][] = new int[2][wiringRow.length];
+        int i;
+
+        for(i = 0 ; i < wiringRow.length ; i++) {
+            table[LEFT][i] = wiringRow[i] - base;
+            table[RIGHT][table[LEFT][i]] = i;
+            }
+        return(table);
+        }
+
+/***********************************************************************
+ * buildPaths() - Builds a path table of a rotor.
+ *
+ * SUMMARY:
+ * Each kind of rotor uses a table of the output contact for every position and
+ * input contact, so that passing a current needs no test of reversed and no mod.
+ * Entry [pos * n + in] is the output for a rotor with n contacts.  side is the
+ * table a normal rotor is read through; a reversed rotor is read through the other
+ * table, upside down.
+ *
+ * Adding n to any value that might go negative prevents a negative value that might
+ * cause a divide error during the mod (%) n operation.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.02        First release.
+ *
+ ***********************************************************************/
+    static int[] buildPaths(int table[][], int side, boolean rev) {
+        int n = table[LEFT].length;
+        int path[] = new int[n * n];
+        int p, in;
+
+        for (p = 0; p < n; p++) {
+            for (in = 0; in < n; in++) {
+                if (rev) {
+                    path[p * n + in] = (p - table[1 - side][(p - in + n) % n] + n) % n;
+                    }
+                else {
+                    path[p * n + in] = (table[side][(in + p) % n] - p + n) % n;
+                    }
+                }
+            }
+        return(path);
+        }
         
     } // end of Rotor
 
@@ -641,20 +1525,47 @@ class Rotor {
  *      
  ***********************************************************************/
 class CipherRotor extends Rotor {
-    int cipherRotor[][] = new int[2][26];
+    // The wiring and path tables of every rotor, shared by all cipher rotors.  The path
+    // tables are [wiringNum * 2] for a normal rotor and [wiringNum * 2 + 1] reversed.
+    static final int TABLES[][][] = new int[WIRING.length][][];
+    static final int ENC_PATHS[][] = new int[WIRING.length * 2][];
+    static final int DEC_PATHS[][] = new int[WIRING.length * 2][];
+    static {
+        int w;
+
+        for (w = 0; w < WIRING.length; w++) {
+            TABLES[w] = wiringTables(WIRING[w], 'A');
+            ENC_PATHS[w * 2] = buildPaths(TABLES[w], LEFT, false);
+            ENC_PATHS[w * 2 + 1] = buildPaths(TABLES[w], LEFT, true);
+            DEC_PATHS[w * 2] = buildPaths(TABLES[w], RIGHT, false);
+            DEC_PATHS[w * 2 + 1] = buildPaths(TABLES[w], RIGHT, true);
+            }
+        }
+
+    int cipherRotor[][];
+    int encPath[];      // encPath[pos * 26 + in] is cipherEncPath(in) at pos
+    int decPath[];      // decPath[pos * 26 + in] is cipherDecPath(in) at pos
 
     CipherRotor(int wiringNum) {    // Constructor for Cipher Rotors.
-   
-        int i;
 
-        for(i = 0 ; i < 26 ; i++) {
-            cipherRotor[LEFT][i] = WIRING[wiringNum][i] - (int) 'A';
-            cipherRotor[RIGHT][cipherRotor[LEFT][i]] = i;
-            }
-            
-        reversed = false;
+        setWiring(wiringNum, false);
         return;
     }
+
+    CipherRotor(CipherRotor other) {    // Copy, sharing the wiring tables.
+
+        setWiring(other.wiring, other.reversed);
+        pos = other.pos;
+        return;
+        }
+
+    void selectPaths() {
+
+        cipherRotor = TABLES[wiring];
+        encPath = ENC_PATHS[wiring * 2 + (reversed ? 1 : 0)];
+        decPath = DEC_PATHS[wiring * 2 + (reversed ? 1 : 0)];
+        return;
+        }
         
 
 /***********************************************************************
@@ -671,19 +1582,12 @@ class CipherRotor extends Rotor {
  *   Date   Version By  Purpose of Revision
  * -------- ------- --- --------------------------------------
  * 8 Oct 96     1.00    RSP First release.
+ * 17 Oct 26    1.02        Table lookup, see Rotor.buildPaths().
  *      
  ***********************************************************************/
     public int cipherEncPath(int in) {
-        int out;
 
-        if (reversed) {
-            out = (pos - cipherRotor[RIGHT][(pos - in + 26) % 26] + 26) % 26;
-            }
-        else {
-            out = (cipherRotor[LEFT][(in + pos) % 26] - pos + 26) % 26;
-            }
-            
-        return(out);
+        return(encPath[pos * 26 + in]);
         }
 
 /***********************************************************************
@@ -700,19 +1604,12 @@ class CipherRotor extends Rotor {
  *   Date   Version By  Purpose of Revision
  * -------- ------- --- --------------------------------------
  * 8 Oct 96     1.00    RSP First release.
+ * 17 Oct 26    1.02        Table lookup, see Rotor.buildPaths().
  *      
  ***********************************************************************/
     public int cipherDecPath(int in) {
-        int out;
 
-        if (reversed) {
-            out = (pos - cipherRotor[LEFT][(pos - in + 26) % 26] + 26) % 26;
-            }
-        else {
-            out = (cipherRotor[RIGHT][(in + pos) % 26] - pos + 26) % 26;
-            }
-            
-        return(out);
+        return(decPath[pos * 26 + in]);
         }
 
     } // end of CipherRotor
@@ -736,17 +1633,39 @@ class CipherRotor extends Rotor {
  *      
  ***********************************************************************/
 class ControlRotor extends Rotor {
-    int controlRotor[][] = new int[2][26];
+    // The wiring and path tables of every rotor, shared by all control rotors.
+    static final int TABLES[][][] = new int[WIRING.length][][];
+    static final int PATHS[][] = new int[WIRING.length * 2][];
+    static {
+        int w;
+
+        for (w = 0; w < WIRING.length; w++) {
+            TABLES[w] = wiringTables(WIRING[w], 'A');
+            PATHS[w * 2] = buildPaths(TABLES[w], RIGHT, false);
+            PATHS[w * 2 + 1] = buildPaths(TABLES[w], RIGHT, true);
+            }
+        }
+
+    int controlRotor[][];
+    int path[];         // path[pos * 26 + in] is controlPath(in) at pos
 
     ControlRotor(int wiringNum) {   // Constructor for Control Rotors.
-        int i;
 
-        for(i = 0 ; i < 26 ; i++) {
-            controlRotor[LEFT][i] = WIRING[wiringNum][i] - (int) 'A';
-            controlRotor[RIGHT][controlRotor[LEFT][i]] = i;
-            }
-            
-        reversed = false;
+        setWiring(wiringNum, false);
+        return;
+        }
+
+    ControlRotor(ControlRotor other) {  // Copy, sharing the wiring tables.
+
+        setWiring(other.wiring, other.reversed);
+        pos = other.pos;
+        return;
+        }
+
+    void selectPaths() {
+
+        controlRotor = TABLES[wiring];
+        path = PATHS[wiring * 2 + (reversed ? 1 : 0)];
         return;
         }
 
@@ -766,22 +1685,12 @@ class ControlRotor extends Rotor {
  *   Date   Version By  Purpose of Revision
  * -------- ------- --- --------------------------------------
  * 8 Oct 96     1.00    RSP First release.
+ * 17 Oct 26    1.02        Table lookup, see Rotor.buildPaths().
  *      
  ***********************************************************************/
     public int controlPath(int in){
-        int out;
- 
-        // Adding 26 to any value that might go negative prevents a negative value that might
-        // cause a divide error during the mod (%) 26 operation.
-        
-        if (reversed) {
-            out = (pos - controlRotor[LEFT][(pos - in + 26) % 26] + 26) % 26;
-            }
-        else {
-            out = (controlRotor[RIGHT][(in + pos) % 26] - pos + 26) % 26;
-            }
-        
-        return(out);
+
+        return(path[pos * 26 + in]);
         }
         
     } // end of ControlRotor class
@@ -805,20 +1714,42 @@ class ControlRotor extends Rotor {
  *      
  ***********************************************************************/
 class IndexRotor extends Rotor {
-    int indexRotor[][] = new int[2][10];
+    // The wiring and path tables of every rotor, shared by all index rotors.
+    static final int TABLES[][][] = new int[INDEXWIRING.length][][];
+    static final int PATHS[][] = new int[INDEXWIRING.length * 2][];
+    static {
+        int w;
+
+        for (w = 0; w < INDEXWIRING.length; w++) {
+            TABLES[w] = wiringTables(INDEXWIRING[w], 0);
+            PATHS[w * 2] = buildPaths(TABLES[w], LEFT, false);
+            PATHS[w * 2 + 1] = buildPaths(TABLES[w], LEFT, true);
+            }
+        }
+
+    int indexRotor[][];
+    int path[];         // path[pos * 10 + in] is indexPath(in) at pos
 
     IndexRotor(int wiringNum) { // Constructor for Index Rotors.
-        int i;
 
-        for(i = 0 ; i < 10 ; i++) {
-            indexRotor[LEFT][i] = INDEXWIRING[wiringNum][i];
-            indexRotor[RIGHT][indexRotor[LEFT][i]] = i;
-            }
-            
-        reversed = false;
+        setWiring(wiringNum, false);
         return;
         }  
 
+    IndexRotor(IndexRotor other) {  // Copy, sharing the wiring tables.
+
+        setWiring(other.wiring, other.reversed);
+        pos = other.pos;
+        return;
+        }
+
+    void selectPaths() {
+
+        indexRotor = TABLES[wiring];
+        path = PATHS[wiring * 2 + (reversed ? 1 : 0)];
+        return;
+        }
+
 /***********************************************************************
  * indexPath() passes a current though an index rotor..
  * Copyright (C) 1996, by Richard Pekelney
@@ -835,26 +1766,44 @@ class IndexRotor extends Rotor {
  *   Date   Version By  Purpose of Revision
  * -------- ------- --- --------------------------------------
  * 8 Oct 96     1.00    RSP First release.
+ * 17 Oct 26    1.02        Table lookup, see Rotor.buildPaths().
  *      
  ***********************************************************************/
     public int indexPath(int in){
-        int out;
 
-        // Adding 10 to any value that might go negative prevents a negative value that might
-        // cause a divide error during the mod (%) 10 operation.
-        
-        if (reversed) {     // This is a reversed rotor.
-            out = (pos - indexRotor[RIGHT][(pos - in + 10) % 10] + 10) % 10;
-            }
-        else {              // This is a normal rotor.
-            out = (indexRotor[LEFT][(in + pos) % 10] - pos + 10) % 10;
-            }
-        
-        return(out);    
+        return(path[pos * 10 + in]);
         }
         
 } // end of IndexRotor class
 
+/***********************************************************************
+ * Application - Command line entry point.
+ *
+ * SUMMARY:
+ * With no arguments, prints the zeroized rotor positions.  To encipher or decipher
+ * a file of any size:
+ *
+ *  java Application encrypt|decrypt in out [cipherOrder controlOrder indexOrder
+ *      [cipherPos controlPos indexPos 889|2900]]
+ *
+ * for example
+ *
+ *  java Application encrypt plain.txt cipher.txt 0N1N2N3N4N 5N6N7N8N9N 0N1N2N3N4N
+ *      OOOOO OOOOO 00000 889
+ *
+ * The defaults are the orders below, zeroized rotors, index positions 00000 and
+ * the CSP-889.  See FileCipher.  Orders are five of digit and N or R, cipher and
+ * control positions five letters, index positions five digits.  Any other arguments
+ * print the usage and exit with status 2.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.02        File encrypt and decrypt.
+ * 17 Oct 26    1.03        Arguments checked.
+ *
+ ***********************************************************************/
 class Application{
     public static void main(String[] args) {
 
@@ -862,6 +1811,9 @@ class Application{
         String controlOrder;
         String indexOrder;
         RotorCage cage;
+        boolean direction;
+        int machine;
+        long letters;
 
         // Get rotor order parameters. In a real machine each rotor can be used only once,
         // this version allows using the same rotor number.
@@ -891,8 +1843,65 @@ class Application{
         
         cage.setIndexBankPos("00000");
 
+        if (args.length > 0) {
+            if (!validArgs(args)) {
+                System.err.println("usage: java Application encrypt|decrypt in out "
+                    + "[cipherOrder controlOrder indexOrder "
+                    + "[cipherPos controlPos indexPos 889|2900]]");
+                System.exit(2);
+                }
+            direction = args[0].equals("encrypt") ? RotorCage.ENCRYPT : RotorCage.DECRYPT;
+            if (args.length >= 6) {
+                cage.setRotorOrder(args[3], args[4], args[5]);
+                }
+            if (args.length == 10) {
+                cage.setCipherBankPos(args[6]);
+                cage.setControlBankPos(args[7]);
+                cage.setIndexBankPos(args[8]);
+                }
+            machine = ((args.length == 10) && args[9].equals("2900")) ?
+                RotorCage.CSP2900 : RotorCage.CSP889;
+            try {
+                letters = new FileCipher(new ECMEngine(cage, machine), direction).run(
+                    java.nio.file.Paths.get(args[1]), java.nio.file.Paths.get(args[2]));
+                }
+            catch (java.io.IOException e) {
+                System.err.println(args[0] + " failed: " + e);
+                System.exit(1);
+                return;
+                }
+            System.err.println(letters + " letters, rotors now " + cage.cipherBankPosToString()
+                + " " + cage.controlBankPosToString());
+            return;
+            }
+
         System.out.println(cage.cipherBankPosToString());
         System.out.println(cage.controlBankPosToString());
         System.out.println(cage.indexBankPosToString());
     }
+
+    // 3, 6 or 10 arguments: the direction and files, the rotor orders, the positions
+    // and the machine.
+    static boolean validArgs(String[] args) {
+        int i;
+
+        if ((args.length != 3) && (args.length != 6) && (args.length != 10)) {
+            return(false);
+            }
+        if (!args[0].equals("encrypt") && !args[0].equals("decrypt")) {
+            return(false);
+            }
+        for (i = 3; i < Math.min(args.length, 6); i++) {
+            if (!args[i].matches("(\\d[NR]){5}")) {
+                return(false);
+                }
+            }
+        if (args.length == 10) {
+            if (!args[6].matches("[A-Z]{5}") || !args[7].matches("[A-Z]{5}")
+                    || !args[8].matches("[0-9]{5}") || !args[9].matches("889|2900")) {
+                return(false);
+                }
+            }
+        return(true);
+        }
 }
\ No newline at end of file
@@ -0,0 +1,263 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+
+/***********************************************************************
+ * RotorStats - Counts what the rotors do, for JMX and Flight Recorder.
+ *
+ * SUMMARY:
+ * Given to RotorCage.setMonitor(), a RotorStats counts the cycles of the machine,
+ * the steps of each cipher rotor, how many cipher rotors moved on each cycle and
+ * the times cipherCount reached the lockout at 21.  A RotorCage without a monitor
+ * only tests for null, so instrumentation costs nothing when it is off.
+ *
+ * The counters are LongAdders, so one RotorStats can be shared by the RotorCages of
+ * many threads, for example the copies made by ECMEngine.encipherParallel().
+ * register() publishes the counters as the MBean ecm:type=RotorStats,name=<name>
+ * and as a RotorActivity Flight Recorder event every second.  A stall is also
+ * recorded as a RotorStall event with the rotor positions, when that event is on:
+ *
+ *  java -XX:StartFlightRecording:filename=ecm.jfr ...
+ *  jfr print --events ecm.RotorStall,ecm.RotorActivity ecm.jfr
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+class RotorStats implements RotorStatsMBean {
+    LongAdder characters = new LongAdder();
+    LongAdder steps[] = new LongAdder[5];
+    LongAdder rotorsMoved[] = new LongAdder[6];
+    LongAdder stalls = new LongAdder();
+
+    String name;
+    ObjectName objectName;
+    Runnable periodic;
+
+
+    RotorStats() {
+        int i;
+
+        for (i = 0; i < steps.length; i++) {
+            steps[i] = new LongAdder();
+            }
+        for (i = 0; i < rotorsMoved.length; i++) {
+            rotorsMoved[i] = new LongAdder();
+            }
+        return;
+        }
+
+/***********************************************************************
+ * moved - Called by RotorCage.cipherBankUpdate() with the cipher rotors moved.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    void moved(int moves) {
+        int i;
+
+        characters.increment();
+        rotorsMoved[Integer.bitCount(moves)].increment();
+        for (i = 0; i < 5; i++) {
+            if ((moves & (1 << i)) != 0) {
+                steps[i].increment();
+                }
+            }
+        return;
+        }
+
+/***********************************************************************
+ * stalled - Called by RotorCage.countCharacter() when cipherCount reaches 21.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    void stalled(RotorCage cage) {
+        RotorStallEvent event;
+
+        stalls.increment();
+        event = new RotorStallEvent();
+        if (event.shouldCommit()) {
+            event.source = name;
+            event.cipherPos = cage.cipherBankPosToString();
+            event.controlPos = cage.controlBankPosToString();
+            event.indexPos = cage.indexBankPosToString();
+            event.commit();
+            }
+        return;
+        }
+
+    public long getCharacters() {
+
+        return(characters.sum());
+        }
+
+    public long[] getRotorSteps() {
+        long sums[] = new long[steps.length];
+        int i;
+
+        for (i = 0; i < steps.length; i++) {
+            sums[i] = steps[i].sum();
+            }
+        return(sums);
+        }
+
+    public long[] getRotorsMoved() {
+        long sums[] = new long[rotorsMoved.length];
+        int i;
+
+        for (i = 0; i < rotorsMoved.length; i++) {
+            sums[i] = rotorsMoved[i].sum();
+            }
+        return(sums);
+        }
+
+    public long getStalls() {
+
+        return(stalls.sum());
+        }
+
+    public void reset() {
+        int i;
+
+        characters.reset();
+        for (i = 0; i < steps.length; i++) {
+            steps[i].reset();
+            }
+        for (i = 0; i < rotorsMoved.length; i++) {
+            rotorsMoved[i].reset();
+            }
+        stalls.reset();
+        return;
+        }
+
+/***********************************************************************
+ * register, unregister - Publish the counters through JMX and Flight Recorder.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    public void register(String name) throws JMException {
+
+        this.name = name;
+        objectName = new ObjectName("ecm:type=RotorStats,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        periodic = new Runnable() {
+            public void run() {
+                RotorActivityEvent event = new RotorActivityEvent();
+                long s[] = getRotorSteps();
+                long m[] = getRotorsMoved();
+
+                event.source = RotorStats.this.name;
+                event.characters = getCharacters();
+                event.steps1 = s[0];
+                event.steps2 = s[1];
+                event.steps3 = s[2];
+                event.steps4 = s[3];
+                event.steps5 = s[4];
+                event.moved1 = m[1];
+                event.moved2 = m[2];
+                event.moved3 = m[3];
+                event.moved4 = m[4];
+                event.stalls = getStalls();
+                event.commit();
+                }
+            };
+        FlightRecorder.addPeriodicEvent(RotorActivityEvent.class, periodic);
+        return;
+        }
+
+    public void unregister() throws JMException {
+
+        if (periodic != null) {
+            FlightRecorder.removePeriodicEvent(periodic);
+            periodic = null;
+            }
+        if (objectName != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            objectName = null;
+            }
+        return;
+        }
+
+    public String toString() {
+        long m[] = getRotorsMoved();
+
+        return(getCharacters() + " characters, rotors moved 1:" + m[1] + " 2:" + m[2] + " 3:"
+            + m[3] + " 4:" + m[4] + ", " + getStalls() + " stalls");
+        }
+
+    }   // end of RotorStats
+
+
+// cipherCount reached the lockout, see RotorCage.countCharacter().
+@Name("ecm.RotorStall")
+@Label("Rotor Stall")
+@Category("ECM")
+@Description("cipherCount reached 21 without the first or last cipher rotor moving")
+class RotorStallEvent extends Event {
+    @Label("Source")
+    String source;
+    @Label("Cipher Rotors")
+    String cipherPos;
+    @Label("Control Rotors")
+    String controlPos;
+    @Label("Index Rotors")
+    String indexPos;
+    }
+
+
+// The counters of a registered RotorStats, every second.
+@Name("ecm.RotorActivity")
+@Label("Rotor Activity")
+@Category("ECM")
+@Period("1 s")
+class RotorActivityEvent extends Event {
+    @Label("Source")
+    String source;
+    @Label("Characters")
+    long characters;
+    @Label("Rotor 1 Steps")
+    long steps1;
+    @Label("Rotor 2 Steps")
+    long steps2;
+    @Label("Rotor 3 Steps")
+    long steps3;
+    @Label("Rotor 4 Steps")
+    long steps4;
+    @Label("Rotor 5 Steps")
+    long steps5;
+    @Label("Cycles Moving 1 Rotor")
+    long moved1;
+    @Label("Cycles Moving 2 Rotors")
+    long moved2;
+    @Label("Cycles Moving 3 Rotors")
+    long moved3;
+    @Label("Cycles Moving 4 Rotors")
+    long moved4;
+    @Label("Stalls")
+    long stalls;
+    }
@@ -0,0 +1,20 @@
+/***********************************************************************
+ * RotorStatsMBean - The JMX view of a RotorStats.
+ *
+ * SUMMARY:
+ * A standard MBean interface has to be public, so it has its own file.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+public interface RotorStatsMBean {
+    long getCharacters();           // cycles of the machine
+    long[] getRotorSteps();         // [i] steps of cipher rotor i
+    long[] getRotorsMoved();        // [n] cycles that moved n cipher rotors
+    long getStalls();               // times cipherCount reached 21
+    void reset();
+    }
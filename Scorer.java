@@ -0,0 +1,28 @@
+/***********************************************************************
+ * Scorer - Scores deciphered text, higher is more like plain language.
+ *
+ * SUMMARY:
+ * text[] holds len contacts 0 to 25, where 25 is a space.  Scores are only compared
+ * between texts of the same length.  A Scorer is shared by all the search threads,
+ * so it must not change any state of its own.
+ *
+ * A search that will drop any text scoring below a threshold passes it, and a
+ * Scorer whose sum only falls as it goes may stop as soon as it is below, returning
+ * any score below the threshold.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        Early abort threshold.
+ *
+ ***********************************************************************/
+interface Scorer {
+    double score(int text[], int len);
+
+    default double score(int text[], int len, double threshold) {
+
+        return(score(text, len));
+        }
+    }   // end of Scorer
@@ -0,0 +1,754 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.PriorityQueue;
+
+/***********************************************************************
+ * Sweep - Checkpointed search of every index and control starting position.
+ *
+ * SUMMARY:
+ * With the rotor orders and the cipher starting positions known, Sweep deciphers the
+ * message at every one of the 10^5 index settings and 26^5 control starting
+ * positions and keeps the best scoring keys.  That is 1.2 * 10^12 keys, days of
+ * work, so the space is cut into UNITS numbered work units and the progress is kept
+ * in a directory where any number of processes, on this machine or others sharing
+ * the directory, take units until none are left:
+ *
+ *  sweep.txt       the key and message, a process of another sweep is refused
+ *  done            one bit per unit, set when the unit is finished
+ *  claims          empty, a process holds a lock on byte u while it works on unit u
+ *  top-NAME.ckpt   the best keys found by the process called NAME
+ *
+ * A lock goes with the process that holds it, so the units of a process that dies
+ * are free again and the next pass of any process takes them.  A top file is
+ * written to a temporary file and renamed over the old one before the done bits of
+ * its units are set, so the last checkpoint is always whole, and a unit whose keys
+ * did not reach its top file is not marked done and is swept again.  A process
+ * started again under the same name goes on from its top file.
+ *
+ * Unit u covers the control positions of rotors 0 to 3 given by u / 10, all 26
+ * positions of control rotor 4, and the 10^4 index settings that start with the
+ * digit u % 10.  As in CribSearch, the control bank outputs of the whole message are
+ * found once per control position and the index bank tables once per unit, so a key
+ * costs only the cipher bank path and moves of each character.
+ *
+ *  java Sweep dir table.ngrm message.txt 889 0N1N2N3N4N 5N6N7N8N9N 0N1N2N3N4N OOOOO
+ *  java Sweep dir -results 20
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+class Sweep {
+    static final int SETTINGS = CribSearch.SETTINGS;            // index settings
+    static final int CONTROL_STARTS = 26 * 26 * 26 * 26 * 26;
+    static final int UNIT_CONTROLS = 26;                        // control starts in a unit
+    static final int UNIT_SETTINGS = SETTINGS / 10;             // index settings in a unit
+    static final int UNITS = CONTROL_STARTS / UNIT_CONTROLS * (SETTINGS / UNIT_SETTINGS);
+    static final int TOP_MAGIC = 0x53575054;                    // "SWPT"
+    static final String SWEEP_FILE = "sweep.txt", DONE_FILE = "done", CLAIMS_FILE = "claims";
+    static final int SCAN_BYTES = 8192;     // done bits read at a time when looking for units
+    static final long RESCAN_MILLIS = 1000; // wait before looking again for units of the dead
+
+    RotorCage start;        // rotor orders and cipher positions, the rest is swept
+    int machine;            // RotorCage.CSP889 or RotorCage.CSP2900
+    Scorer scorer;
+    int cipher[];           // the message as contacts, see ECMEngine.decipherContact()
+    int length;
+    int topK;
+    int first, currents;    // the control bank outputs that reach the index bank
+
+    int threads = Runtime.getRuntime().availableProcessors();
+    int fromUnit = 0, toUnit = UNITS;
+
+    Path dir;
+    Path topFile;
+    FileChannel done, claims;
+    PriorityQueue<SweepCandidate> best;     // worst on top
+    ByteBuffer scan = ByteBuffer.allocate(SCAN_BYTES);
+    int scanBase = -1;      // byte of the done file at scan[0]
+    int cursor;             // next unit to look at
+    int skipped;            // units held by other processes in this pass
+    int finished;           // units finished by this process
+    volatile boolean stop;
+    IOException error;      // the first failure of a worker
+
+
+/***********************************************************************
+ * Sweep - Constructor.
+ *
+ * SUMMARY:
+ * start supplies the rotor orders and the cipher starting positions, its control
+ * and index positions are ignored.  The ciphertext is read as in KeySearch.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    Sweep(RotorCage start, int machine, CharSequence ciphertext, Scorer scorer, int topK) {
+        int i, c;
+
+        this.start = new RotorCage(start);
+        this.machine = machine;
+        this.scorer = scorer;
+        this.topK = Math.max(1, topK);
+        cipher = new int[ciphertext.length()];
+        length = 0;
+        for (i = 0; i < ciphertext.length(); i++) {
+            c = ECMEngine.decipherContact(ciphertext.charAt(i));
+            if (c >= 0) {
+                cipher[length++] = c;
+                }
+            }
+        first = (machine == RotorCage.CSP889) ? (int) 'F' - 'A' : (int) 'D' - 'A';
+        currents = (int) 'I' - 'A' - first + 1;
+        best = new PriorityQueue<SweepCandidate>(this.topK + 1);
+        return;
+        }
+
+    public void setThreads(int threads) {
+
+        this.threads = Math.max(1, threads);
+        return;
+        }
+
+    // Only units from up to but not including to are taken, for a part of a sweep.
+    public void setUnits(int from, int to) {
+
+        fromUnit = Math.max(0, from);
+        toUnit = Math.min(UNITS, to);
+        return;
+        }
+
+    // The key and message, as kept in sweep.txt.
+    String describe() {
+        StringBuffer text = new StringBuffer();
+        int i;
+
+        text.append("machine ").append((machine == RotorCage.CSP889) ? "889" : "2900").append('\n');
+        text.append("order ").append(start.cipherOrderString()).append(' ')
+            .append(start.controlOrderString()).append(' ')
+            .append(start.indexOrderString()).append('\n');
+        text.append("cipher ").append(start.cipherBankPosToString()).append('\n');
+        text.append("message ");
+        for (i = 0; i < length; i++) {
+            text.append((char) ('A' + cipher[i]));
+            }
+        text.append('\n');
+        return(text.toString());
+        }
+
+/***********************************************************************
+ * open - Joins the sweep kept in dir.
+ *
+ * SUMMARY:
+ * Makes the directory and its files if this is the first process.  name tells this
+ * process's top file from the others, a process opened again with the same name
+ * starts from the keys of its last checkpoint.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        Lock released in a finally.
+ *
+ ***********************************************************************/
+    public void open(Path dir, String name) throws IOException {
+        FileLock setup;
+        Path sweepFile;
+        String text;
+
+        this.dir = dir;
+        Files.createDirectories(dir);
+        claims = FileChannel.open(dir.resolve(CLAIMS_FILE), StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        done = FileChannel.open(dir.resolve(DONE_FILE), StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+
+        // The byte past the last unit guards the making of the files.
+        setup = claims.lock(UNITS, 1, false);
+        try {
+            sweepFile = dir.resolve(SWEEP_FILE);
+            text = describe();
+            if (!Files.exists(sweepFile)) {
+                Files.write(sweepFile, text.getBytes(StandardCharsets.US_ASCII));
+                }
+            else if (!text.equals(new String(Files.readAllBytes(sweepFile),
+                    StandardCharsets.US_ASCII))) {
+                throw new IOException(dir + " holds a sweep of another key or message");
+                }
+            if (done.size() < UNITS / 8) {
+                done.write(ByteBuffer.allocate(1), UNITS / 8 - 1);
+                }
+            }
+        finally {
+            setup.release();
+            }
+
+        topFile = dir.resolve("top-" + name + ".ckpt");
+        best.clear();
+        if (Files.exists(topFile)) {
+            for (SweepCandidate k : readTop(topFile)) {
+                offer(best, k, topK);
+                }
+            }
+        cursor = fromUnit;
+        skipped = 0;
+        scanBase = -1;
+        return;
+        }
+
+    public void close() throws IOException {
+
+        claims.close();
+        done.close();
+        return;
+        }
+
+/***********************************************************************
+ * run - Sweeps units until there are none left.
+ *
+ * SUMMARY:
+ * Returns the number of units this call finished.  Returns when every unit is done,
+ * or when this thread is interrupted, after the units in hand are finished.  While
+ * other processes hold the last units it waits for them, in case they die.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    public int run() throws IOException, InterruptedException {
+        Thread workers[] = new Thread[threads];
+        int i, before;
+
+        before = finished;
+        stop = false;
+        error = null;
+        for (i = 0; i < threads; i++) {
+            workers[i] = new Thread(new SweepWorker(this), "Sweep-" + i);
+            workers[i].start();
+            }
+        try {
+            for (i = 0; i < threads; i++) {
+                workers[i].join();
+                }
+            }
+        finally {
+            stop = true;
+            }
+        if (error != null) {
+            throw error;
+            }
+        return(finished - before);
+        }
+
+/***********************************************************************
+ * claim - Takes the next unit that is not done and not held.
+ *
+ * SUMMARY:
+ * Returns the lock on the unit's claims byte, its position is the unit, or null when
+ * the sweep is over.  The done bit is read again once the unit is held, another
+ * process may have finished it since the bits were scanned.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    synchronized FileLock claim() throws IOException, InterruptedException {
+        FileLock lock;
+
+        while (!stop) {
+            if (cursor >= toUnit) {
+                if (skipped == 0) {
+                    return(null);
+                    }
+                wait(RESCAN_MILLIS);
+                cursor = fromUnit;
+                skipped = 0;
+                scanBase = -1;
+                }
+            for (; (cursor < toUnit) && !stop; cursor++) {
+                if (scannedDone(cursor)) {
+                    continue;
+                    }
+                try {
+                    lock = claims.tryLock(cursor, 1, false);
+                    }
+                catch (OverlappingFileLockException e) {    // held by a thread of ours
+                    lock = null;
+                    }
+                if (lock == null) {
+                    skipped++;
+                    continue;
+                    }
+                if (isDone(cursor)) {
+                    lock.release();
+                    continue;
+                    }
+                cursor++;
+                return(lock);
+                }
+            }
+        return(null);
+        }
+
+    // The done bit of a unit as of the last read of its block.
+    boolean scannedDone(int unit) throws IOException {
+        int n;
+
+        if ((scanBase < 0) || (unit / 8 < scanBase) || (unit / 8 >= scanBase + scan.limit())) {
+            scanBase = unit / 8;
+            scan.clear();
+            do {
+                n = done.read(scan, scanBase + scan.position());
+                } while ((n > 0) && scan.hasRemaining());
+            scan.flip();
+            if (scan.limit() == 0) {
+                return(false);
+                }
+            }
+        return((scan.get(unit / 8 - scanBase) & (1 << (unit % 8))) != 0);
+        }
+
+    boolean isDone(int unit) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(1);
+
+        done.read(b, unit / 8);
+        return((b.get(0) & (1 << (unit % 8))) != 0);
+        }
+
+/***********************************************************************
+ * finish - Checkpoints the keys of a swept unit and marks it done.
+ *
+ * SUMMARY:
+ * found holds the best keys of the unit.  The top file is on the disk before the done
+ * bit is set, and the unit is let go only after.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        Lock released in a finally.
+ *
+ ***********************************************************************/
+    synchronized void finish(FileLock unit, PriorityQueue<SweepCandidate> found) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(1);
+        SweepCandidate c;
+        FileLock lock;
+        long at;
+
+        while ((c = found.poll()) != null) {
+            offer(best, c, topK);
+            }
+        writeTop(topFile, best);
+
+        // Other processes set other bits of the same byte.
+        at = unit.position() / 8;
+        lock = done.lock(at, 1, false);
+        try {
+            done.read(b, at);
+            b.put(0, (byte) (b.get(0) | (1 << (unit.position() % 8))));
+            b.clear();
+            done.write(b, at);
+            done.force(false);
+            }
+        finally {
+            lock.release();
+            }
+        unit.release();
+        finished++;
+        notifyAll();            // claim() may be waiting for this unit
+        return;
+        }
+
+    // The worst score this process keeps, the least a key of a new unit must beat.
+    synchronized double floor() {
+
+        return((best.size() < topK) ? Double.NEGATIVE_INFINITY : best.peek().score);
+        }
+
+    // Keeps c if it is better than the worst of best and its key is not already there.
+    // A unit swept again after a restart finds the same keys.
+    static void offer(PriorityQueue<SweepCandidate> best, SweepCandidate c, int topK) {
+
+        for (SweepCandidate k : best) {
+            if (k.key == c.key) {
+                return;
+                }
+            }
+        if (best.size() < topK) {
+            best.add(c);
+            }
+        else if (c.compareTo(best.peek()) > 0) {
+            best.poll();
+            best.add(c);
+            }
+        return;
+        }
+
+/***********************************************************************
+ * writeTop, readTop - A top file.
+ *
+ * SUMMARY:
+ * "SWPT", the number of keys, then each key and score, big endian.  The file is
+ * written beside the old one and renamed over it.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    static void writeTop(Path file, PriorityQueue<SweepCandidate> best) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(8 + 16 * best.size());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        b.putInt(TOP_MAGIC);
+        b.putInt(best.size());
+        for (SweepCandidate c : best) {
+            b.putLong(c.key);
+            b.putDouble(c.score);
+            }
+        b.flip();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (b.hasRemaining()) {
+                channel.write(b);
+                }
+            channel.force(true);
+            }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return;
+        }
+
+    static SweepCandidate[] readTop(Path file) throws IOException {
+        ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(file));
+        SweepCandidate top[];
+        int i;
+
+        if ((b.remaining() < 8) || (b.getInt() != TOP_MAGIC) || (b.remaining() != 4 + 16L * b.getInt(4))) {
+            throw new IOException(file + " is not a sweep checkpoint");
+            }
+        top = new SweepCandidate[b.getInt()];
+        for (i = 0; i < top.length; i++) {
+            top[i] = new SweepCandidate(b.getLong(), b.getDouble());
+            }
+        return(top);
+        }
+
+/***********************************************************************
+ * results - The best keys of all the processes of a sweep, best first.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        Duplicates dropped by offer().
+ *
+ ***********************************************************************/
+    public static SweepCandidate[] results(Path dir, int topK) throws IOException {
+        PriorityQueue<SweepCandidate> best = new PriorityQueue<SweepCandidate>(topK + 1);
+        SweepCandidate result[];
+        int i;
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "top-*.ckpt")) {
+            for (Path file : files) {
+                for (SweepCandidate c : readTop(file)) {
+                    offer(best, c, topK);
+                    }
+                }
+            }
+        result = new SweepCandidate[best.size()];
+        for (i = result.length - 1; i >= 0; i--) {
+            result[i] = best.poll();
+            }
+        return(result);
+        }
+
+    // The number of units done.
+    public static int progress(Path dir) throws IOException {
+        byte bits[];
+        int i, n;
+
+        bits = Files.readAllBytes(dir.resolve(DONE_FILE));
+        n = 0;
+        for (i = 0; i < bits.length; i++) {
+            n += Integer.bitCount(bits[i] & 0xff);
+            }
+        return(n);
+        }
+
+    public static void main(String args[]) throws IOException, InterruptedException {
+        Path dir;
+        RotorCage cage;
+        Sweep sweep;
+        SweepCandidate top[];
+        long startTime;
+        int n;
+
+        if ((args.length >= 2) && args[1].equals("-results")) {
+            dir = Paths.get(args[0]);
+            top = results(dir, (args.length > 2) ? Integer.parseInt(args[2]) : 20);
+            for (SweepCandidate c : top) {
+                System.out.println(c);
+                }
+            System.out.println(progress(dir) + " of " + UNITS + " units done");
+            return;
+            }
+        if (args.length < 8) {
+            System.err.println("usage: java Sweep dir table.ngrm message.txt 889|2900 "
+                + "cipherSet controlSet indexSet cipherPos [threads [name]]");
+            System.err.println("       java Sweep dir -results [count]");
+            System.exit(2);
+            }
+        dir = Paths.get(args[0]);
+        cage = new RotorCage(args[4], args[5], args[6]);
+        cage.setCipherBankPos(args[7]);
+        sweep = new Sweep(cage, args[3].equals("2900") ? RotorCage.CSP2900 : RotorCage.CSP889,
+            new String(Files.readAllBytes(Paths.get(args[2])), StandardCharsets.ISO_8859_1),
+            OffHeapNgramScorer.map(Paths.get(args[1])), 100);
+        if (args.length > 8) {
+            sweep.setThreads(Integer.parseInt(args[8]));
+            }
+        sweep.open(dir, (args.length > 9) ? args[9] : String.valueOf(ProcessHandle.current().pid()));
+        startTime = System.nanoTime();
+        n = sweep.run();
+        sweep.close();
+        System.err.printf("%d units in %.1f s, %d of %d done%n", n,
+            (System.nanoTime() - startTime) / 1e9, progress(dir), UNITS);
+        return;
+        }
+
+    }   // end of Sweep
+
+
+/***********************************************************************
+ * SweepCandidate - One scored key of a Sweep.
+ *
+ * SUMMARY:
+ * key is the control starting position, read as a number in base 26 with control
+ * rotor 0 first, times SETTINGS plus the index setting, see CribSearch.indexPos().
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+class SweepCandidate implements Comparable<SweepCandidate> {
+    long key;
+    double score;
+
+    SweepCandidate(long key, double score) {
+
+        this.key = key;
+        this.score = score;
+        return;
+        }
+
+    public String controlPos() {
+        char pos[] = new char[5];
+        int control, i;
+
+        control = (int) (key / Sweep.SETTINGS);
+        for (i = 4; i >= 0; i--) {
+            pos[i] = (char) ('A' + control % 26);
+            control /= 26;
+            }
+        return(new String(pos));
+        }
+
+    public String indexPos() {
+
+        return(CribSearch.indexPos((int) (key % Sweep.SETTINGS)));
+        }
+
+    // Worst first, as KeyCandidate.
+    public int compareTo(SweepCandidate other) {
+
+        if (score != other.score) {
+            return((score < other.score) ? -1 : 1);
+            }
+        return(Long.compare(other.key, key));
+        }
+
+    public String toString() {
+
+        return(controlPos() + " " + indexPos() + " " + score);
+        }
+
+    }   // end of SweepCandidate
+
+
+/***********************************************************************
+ * SweepWorker - One sweep thread, taking units until there are none left.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+class SweepWorker implements Runnable {
+    Sweep sweep;
+    RotorCage cage;
+    int startCipher[] = new int[5];
+    int controlOut[];       // control bank outputs, currents per character
+    int tables[];           // the indexMoves() table of each index setting of the unit
+    int plain[];
+    PriorityQueue<SweepCandidate> found;
+
+
+    SweepWorker(Sweep sweep) {
+        int i;
+
+        this.sweep = sweep;
+        cage = new RotorCage(sweep.start);
+        cage.useStepTable(false);
+        for (i = 0; i < 5; i++) {
+            startCipher[i] = cage.cipherBank[i].pos;
+            }
+        controlOut = new int[sweep.length * sweep.currents];
+        tables = new int[Sweep.UNIT_SETTINGS * 26];
+        plain = new int[sweep.length];
+        found = new PriorityQueue<SweepCandidate>(sweep.topK + 1);
+        return;
+        }
+
+    public void run() {
+        FileLock unit;
+
+        try {
+            while ((unit = sweep.claim()) != null) {
+                try {
+                    sweepUnit((int) unit.position(), sweep.floor());
+                    sweep.finish(unit, found);
+                    }
+                finally {
+                    if (unit.isValid()) {   // not finished, another process may take it
+                        unit.release();
+                        }
+                    }
+                }
+            }
+        catch (InterruptedException e) {
+            sweep.stop = true;
+            }
+        catch (IOException e) {
+            synchronized (sweep) {
+                if (sweep.error == null) {
+                    sweep.error = e;
+                    }
+                }
+            sweep.stop = true;
+            }
+        return;
+        }
+
+/***********************************************************************
+ * sweepUnit - Deciphers the message with every key of a unit.
+ *
+ * SUMMARY:
+ * Leaves the best keys scoring at least floor in found.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+    void sweepUnit(int unit, double floor) {
+        int cipher[] = sweep.cipher;
+        int length = sweep.length;
+        int currents = sweep.currents;
+        int machine = sweep.machine;
+        int topK = sweep.topK;
+        int high, setting0, control, s, t, i, j, base, moves, pos;
+        double score;
+
+        high = unit / 10;               // control rotors 0 to 3
+        setting0 = unit % 10 * Sweep.UNIT_SETTINGS;
+        found.clear();
+
+        for (s = 0; s < Sweep.UNIT_SETTINGS; s++) {
+            pos = setting0 + s;
+            for (i = 4; i >= 0; i--) {
+                cage.indexBank[i].pos = pos % 10;
+                pos /= 10;
+                }
+            System.arraycopy(cage.indexMoves(machine), 0, tables, s * 26, 26);
+            }
+
+        for (control = high * 26; control < high * 26 + Sweep.UNIT_CONTROLS; control++) {
+            pos = control;
+            for (i = 4; i >= 0; i--) {
+                cage.controlBank[i].pos = pos % 26;
+                pos /= 26;
+                }
+            for (t = 0; t < length; t++) {
+                for (j = 0; j < currents; j++) {
+                    controlOut[t * currents + j] = cage.controlBankPath(sweep.first + j);
+                    }
+                cage.controlBankUpdate();
+                }
+
+            for (s = 0; s < Sweep.UNIT_SETTINGS; s++) {
+                for (i = 0; i < 5; i++) {
+                    cage.cipherBank[i].pos = startCipher[i];
+                    }
+                base = s * 26;
+                for (t = 0; t < length; t++) {
+                    plain[t] = cage.cipherBankPath(RotorCage.DECRYPT, cipher[t]);
+                    moves = 0;
+                    for (j = 0; j < currents; j++) {
+                        moves |= tables[base + controlOut[t * currents + j]];
+                        }
+                    cage.cipherBankRotate(moves, machine);
+                    }
+                if (found.size() < topK) {
+                    score = sweep.scorer.score(plain, length, floor);
+                    if (score >= floor) {
+                        found.add(new SweepCandidate((long) control * Sweep.SETTINGS + setting0 + s, score));
+                        }
+                    }
+                else {
+                    score = sweep.scorer.score(plain, length, Math.max(floor, found.peek().score));
+                    if (score > found.peek().score) {
+                        found.poll();
+                        found.add(new SweepCandidate((long) control * Sweep.SETTINGS + setting0 + s, score));
+                        }
+                    }
+                }
+            }
+        return;
+        }
+
+    }   // end of SweepWorker
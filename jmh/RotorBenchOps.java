@@ -0,0 +1,30 @@
+/***********************************************************************
+ * RotorBenchOps - A RotorBench for the JMH benchmarks in ecmbench.
+ *
+ * SUMMARY:
+ * rotors is "normal" or "reversed", machine is RotorCage.CSP889 or CSP2900.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+public class RotorBenchOps implements ecmbench.RotorOps {
+    RotorBench bench;
+
+
+    public RotorBenchOps(String rotors, int machine) {
+
+        bench = new RotorBench(rotors.equals("reversed") ? RotorBench.REVERSED
+            : RotorBench.NORMAL, machine);
+        return;
+        }
+
+    public long run(String name, int ops) {
+
+        return(bench.run(name, ops));
+        }
+
+    }   // end of RotorBenchOps
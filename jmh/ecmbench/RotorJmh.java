@@ -0,0 +1,136 @@
+package ecmbench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/***********************************************************************
+ * RotorJmh - The RotorBench benchmarks under JMH.
+ *
+ * SUMMARY:
+ * One @Benchmark for each benchmark of RotorBench, for the CSP-889 and CSP-2900 and
+ * for normal and reversed rotors.  An operation is one character (or call), so the
+ * score is characters per second and the gc.alloc.rate.norm of the GC profiler is
+ * bytes per character, which must be 0 for the benchmarks in RotorBench.NO_ALLOCATION.
+ *
+ *  mvn -Pjmh package
+ *  java -jar target/benchmarks.jar -prof gc
+ *  java -jar target/benchmarks.jar -prof gc RotorJmh.cycle
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RotorJmh {
+    static final int CALLS = 10000;             // calls per invocation of the small paths
+    static final int BULK_SIZE = 1 << 20;       // RotorBench.BULK_SIZE
+    static final int MULTI_CHARS = 1024 * 64;   // RotorBench.MULTI_SIZE * MULTI_LANES
+
+    @Param({"0", "1"})                          // RotorCage.CSP889, CSP2900
+    public int machine;
+
+    @Param({"normal", "reversed"})
+    public String rotors;
+
+    RotorOps ops;
+
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+
+        ops = (RotorOps) Class.forName("RotorBenchOps")
+            .getConstructor(String.class, int.class).newInstance(rotors, machine);
+        return;
+        }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public long cycle() {
+
+        return(ops.run("cycle", CALLS));
+        }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public long cycleStepTable() {
+
+        return(ops.run("cycleStepTable", CALLS));
+        }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public long cipherBankPathEnc() {
+
+        return(ops.run("cipherBankPathEnc", CALLS));
+        }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public long cipherBankPathDec() {
+
+        return(ops.run("cipherBankPathDec", CALLS));
+        }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public long controlBankPath() {
+
+        return(ops.run("controlBankPath", CALLS));
+        }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public long indexBankPath() {
+
+        return(ops.run("indexBankPath", CALLS));
+        }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public long cipherBankUpdate() {
+
+        return(ops.run("cipherBankUpdate", CALLS));
+        }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK_SIZE)
+    public long bulkEncipher() {
+
+        return(ops.run("bulkEncipher", 1));
+        }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK_SIZE)
+    public long bulkEncipherParallel() {
+
+        return(ops.run("bulkEncipherParallel", 1));
+        }
+
+    @Benchmark
+    @OperationsPerInvocation(MULTI_CHARS)
+    public long multiKey() {
+
+        return(ops.run("multiKey", 1));
+        }
+
+    }   // end of RotorJmh
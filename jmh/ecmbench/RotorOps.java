@@ -0,0 +1,23 @@
+package ecmbench;
+
+/***********************************************************************
+ * RotorOps - The benchmarks of RotorBench, as seen from a named package.
+ *
+ * SUMMARY:
+ * JMH needs its benchmarks in a named package, and a named package cannot see the
+ * default package the machine is in.  RotorBenchOps, in the default package,
+ * implements this on a RotorBench and RotorJmh loads it by name.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ *
+ ***********************************************************************/
+public interface RotorOps {
+
+    // As RotorBench.run(): calls one benchmark ops times, returns the characters done.
+    long run(String bench, int ops);
+
+    }   // end of RotorOps
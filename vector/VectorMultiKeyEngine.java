@@ -0,0 +1,243 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/***********************************************************************
+ * VectorMultiKeyEngine - MultiKeyEngine on the jdk.incubator.vector API.
+ *
+ * SUMMARY:
+ * Each vector lane is one machine.  The path table lookups are gathers from the flat
+ * tables of MultiKeyEngine, the cipher rotor moves are lane masks and the rotor
+ * steps are masked adds, so there are no branches on the key.  Lanes left over
+ * after the last whole vector are done by MultiKeyEngine.cycleLanes().
+ *
+ * A character is done in stages over all the lanes, the cipher path, the control
+ * currents, the cipher rotor steps and the control meter, with the contacts between
+ * stages kept in int[]s.  cycle() calls the stages through Runnables, so C2 compiles
+ * each stage on its own and keeps all of its vectors in registers.  With the whole
+ * character in one compiled method C2 stopped inlining the vector calls part way
+ * through and boxed vectors, about 96 bytes a character.
+ * The JDK 17 gather takes its indexes from an int[], so each path stage stores the
+ * indexes of all the lanes and gathers from them.  The masked gather of JDK 17.0.9
+ * crashes C2 on AVX-512, so the lanes of input currents that are off are blended out
+ * after the gather instead.
+ *
+ * This file is kept out of the normal build in vector/, since it needs the incubator
+ * module to compile and run:
+ *
+ *  javac --add-modules jdk.incubator.vector *.java vector/*.java
+ *  java --add-modules jdk.incubator.vector -Decm.vector=true ...
+ *
+ * MultiKeyEngine.create() only returns this engine when ecm.vector is set.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        Stages that do not allocate.
+ *
+ ***********************************************************************/
+class VectorMultiKeyEngine extends MultiKeyEngine {
+    static final VectorSpecies<Integer> S = IntVector.SPECIES_PREFERRED;
+
+    int bound;              // lanes in whole vectors
+    int c[];                // the contact of each lane through the cipher bank
+    int k[];                // the contact of each lane through the control bank
+    int index[];            // gather indexes of each lane
+    int moves[];            // the cipher rotors that move in each lane
+
+    // The stages of a character, see cycle().
+    Runnable encipherStages[], decipherStages[];
+
+
+    VectorMultiKeyEngine(KeySchedule keys[], CageState states[]) {
+        super(keys, states);
+        Runnable moves, rotate, meter;
+
+        bound = S.loopBound(lanes);
+        c = new int[lanes];
+        k = new int[lanes];
+        index = new int[lanes];
+        this.moves = new int[lanes];
+
+        moves = new Runnable() {
+            public void run() {
+                controlMoves();
+                return;
+                }
+            };
+        rotate = new Runnable() {
+            public void run() {
+                rotate();
+                return;
+                }
+            };
+        meter = new Runnable() {
+            public void run() {
+                meter();
+                return;
+                }
+            };
+        encipherStages = new Runnable[] {
+            new Runnable() {
+                public void run() {
+                    cipherPath(ENCRYPT);
+                    return;
+                    }
+                },
+            moves, rotate, meter
+            };
+        decipherStages = new Runnable[] {
+            new Runnable() {
+                public void run() {
+                    cipherPath(DECRYPT);
+                    return;
+                    }
+                },
+            moves, rotate, meter
+            };
+        return;
+        }
+
+/***********************************************************************
+ * cycle - One character on every lane, a vector of lanes at a time.
+ *
+ * SUMMARY:
+ * The stages are called from one call site that sees five classes, a call C2 does not
+ * inline, so each stage is compiled on its own, see the class SUMMARY.
+ *
+ * REVISION HISTORY:
+ *
+ *   Date   Version By  Purpose of Revision
+ * -------- ------- --- --------------------------------------
+ * 17 Oct 26    1.00        First release.
+ * 17 Oct 26    1.01        Done in stages.
+ *
+ ***********************************************************************/
+    public void cycle(boolean direction, int in[], int inOff, int out[], int outOff) {
+        Runnable stages[];
+        int i;
+
+        System.arraycopy(in, inOff, c, 0, bound);
+        stages = (direction == ENCRYPT) ? encipherStages : decipherStages;
+        for (i = 0; i < stages.length; i++) {
+            stages[i].run();
+            }
+        System.arraycopy(c, 0, out, outOff, bound);
+        cycleLanes(bound, lanes, direction, in, inOff, out, outOff);
+        return;
+        }
+
+    // Looks up x[] through rotor r of every lane: table[base + pos * 26 + x].
+    void path(int table[], int pos[], int r, int x[]) {
+        int l;
+
+        for (l = 0; l < bound; l += S.length()) {
+            IntVector.fromArray(S, base, r * lanes + l)
+                .add(IntVector.fromArray(S, pos, r * lanes + l).mul(26))
+                .add(IntVector.fromArray(S, x, l))
+                .intoArray(index, l);
+            }
+        for (l = 0; l < bound; l += S.length()) {
+            IntVector.fromArray(S, table, 0, index, l).intoArray(x, l);
+            }
+        return;
+        }
+
+    void cipherPath(boolean direction) {
+        int r;
+
+        if (direction == ENCRYPT) {
+            for (r = 0; r <= 4; r++) {
+                path(enc, cipherPos, r, c);
+                }
+            }
+        else {
+            for (r = 4; r >= 0; r--) {
+                path(dec, cipherPos, r, c);
+                }
+            }
+        return;
+        }
+
+    // The cipher rotors that move, into moves[].  A CSP-889 lane has D and E off.
+    void controlMoves() {
+        VectorMask<Integer> on;
+        int l, r, j;
+
+        for (l = 0; l < bound; l += S.length()) {
+            IntVector.zero(S).intoArray(moves, l);
+            }
+        for (j = (int) 'D' - 'A'; j <= (int) 'I' - 'A'; j++) {
+            for (l = 0; l < bound; l += S.length()) {
+                IntVector.broadcast(S, j).intoArray(k, l);
+                }
+            for (r = 4; r >= 0; r--) {
+                path(control, controlPos, r, k);
+                }
+            for (l = 0; l < bound; l += S.length()) {
+                IntVector.fromArray(S, indexBase, l).add(IntVector.fromArray(S, k, l))
+                    .intoArray(index, l);
+                }
+            for (l = 0; l < bound; l += S.length()) {
+                on = IntVector.fromArray(S, firstCurrent, l).compare(VectorOperators.LE, j);
+                IntVector.fromArray(S, moves, l)
+                    .or(IntVector.fromArray(S, indexMoves, 0, index, l).blend(0, on.not()))
+                    .intoArray(moves, l);
+                }
+            }
+        return;
+        }
+
+    // Steps the cipher rotors in moves[] and clears cipherCount.
+    void rotate() {
+        IntVector m, pos;
+        int l, r;
+
+        for (l = 0; l < bound; l += S.length()) {
+            m = IntVector.fromArray(S, moves, l);
+            for (r = 0; r < 5; r++) {
+                pos = IntVector.fromArray(S, cipherPos, r * lanes + l);
+                pos = pos.add(IntVector.fromArray(S, cipherStep, r * lanes + l),
+                    m.and(1 << r).compare(VectorOperators.NE, 0));
+                wrap(pos).intoArray(cipherPos, r * lanes + l);
+                }
+            IntVector.fromArray(S, count, l)
+                .blend(0, m.and(0x11).compare(VectorOperators.NE, 0))
+                .intoArray(count, l);
+            }
+        return;
+        }
+
+    // The control bank "water meter".
+    void meter() {
+        IntVector p1, p2, p3;
+        VectorMask<Integer> m2, m3;
+        int l;
+
+        for (l = 0; l < bound; l += S.length()) {
+            p1 = IntVector.fromArray(S, controlPos, lanes + l);
+            p2 = IntVector.fromArray(S, controlPos, 2 * lanes + l);
+            p3 = IntVector.fromArray(S, controlPos, 3 * lanes + l);
+            m2 = p2.compare(VectorOperators.EQ, ZERO);                  // medium rotor moves
+            m3 = m2.and(p3.compare(VectorOperators.EQ, ZERO));          // slow rotor moves
+            wrap(p1.add(IntVector.fromArray(S, controlStep, lanes + l), m3))
+                .intoArray(controlPos, lanes + l);
+            wrap(p3.add(IntVector.fromArray(S, controlStep, 3 * lanes + l), m2))
+                .intoArray(controlPos, 3 * lanes + l);
+            wrap(p2.add(IntVector.fromArray(S, controlStep, 2 * lanes + l)))
+                .intoArray(controlPos, 2 * lanes + l);
+            }
+        return;
+        }
+
+    // Brings a position that has just moved one step back into 0 to 25.
+    static IntVector wrap(IntVector pos) {
+
+        pos = pos.add(26, pos.compare(VectorOperators.LT, 0));
+        return(pos.sub(26, pos.compare(VectorOperators.GE, 26)));
+        }
+
+    }   // end of VectorMultiKeyEngine